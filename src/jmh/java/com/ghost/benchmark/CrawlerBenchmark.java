@@ -0,0 +1,119 @@
+package com.ghost.benchmark;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.index.Crawler;
+import com.ghost.lucene.index.Indexer;
+import com.ghost.lucene.index.RobotsCache;
+import com.ghost.source.PageFetcher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a whole crawl of a local stub site with slow responses by different numbers of fetch workers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class CrawlerBenchmark {
+
+    private static final int PAGES = 500;
+    private static final int LINKS = 10;
+    private static final int DEPTH = 3;
+    private static final int LATENCY = 50;
+
+    @Param({"15", "100"})
+    public String threads;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Path indexPath;
+    private Indexer indexer;
+    private PageFetcher fetcher;
+    private RobotsCache robotsCache;
+    private LuceneProperties.Index properties;
+    private Crawler crawler;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1000);
+        server.createContext("/page/", this::page);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        indexPath = Files.createTempDirectory("nooble-bench");
+        properties = SyntheticCorpus.properties(indexPath,
+                "lucene.index.threads", threads,
+                "lucene.index.host-concurrency", "0",
+                "lucene.index.host-rate", "0",
+                "lucene.index.robots", "false",
+                "lucene.index.fetch-connections-per-host", "200",
+                "lucene.index.fetch-in-flight", "1000").getIndex();
+        indexer = new Indexer(SyntheticCorpus.properties(indexPath));
+        indexer.init();
+        fetcher = PageFetcher.create(properties);
+        robotsCache = new RobotsCache(fetcher, properties.getUserAgent(), 0, properties.isRobots());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%d pages, %.1f pages/s by %d workers%n", crawler.getIndexedCount(),
+                crawler.getPagesPerSecond(), crawler.getConcurrency());
+        robotsCache.close();
+        fetcher.close();
+        indexer.close();
+        SyntheticCorpus.delete(indexPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int crawl() throws Exception {
+        URL seed = new URL("http", "localhost", server.getAddress().getPort(), "/page/0");
+        crawler = new Crawler(seed, DEPTH, indexer, fetcher, robotsCache, properties);
+        return crawler.call();
+    }
+
+    /**
+     * Responds after a delay with a page linking to LINKS other pages of the site
+     */
+    private void page(HttpExchange exchange) throws IOException {
+        int id = Integer.parseInt(exchange.getRequestURI().getPath().substring("/page/".length()));
+        StringBuilder html = new StringBuilder("<html><head><title>Page ").append(id).append("</title></head><body>");
+        for (int i = 1; i <= LINKS; i++) {
+            html.append("<a href=\"/page/").append((id * LINKS + i) % PAGES).append("\">link</a> ");
+        }
+        byte[] body = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            Thread.sleep(LATENCY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ghost.benchmark;
+
+import com.ghost.lucene.LuceneConstants;
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.index.Indexer;
+import com.ghost.lucene.search.FragmentHighlighter;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per hit highlighting cost of classic and postings highlighters, with and without term vectors.
+ * Index size of both field types is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HighlighterBenchmark {
+
+    private static final int DOCUMENTS = 2000;
+    private static final int HITS = 10;
+    private static final int QUERIES = 100;
+
+    @Param({"classic", "postings"})
+    public String highlighter;
+
+    @Param({"true", "false"})
+    public boolean termVectors;
+
+    private Path indexPath;
+    private Indexer indexer;
+    private DirectoryReader reader;
+    private IndexSearcher indexSearcher;
+    private FragmentHighlighter fragmentHighlighter;
+    private Query[] queries;
+    private int[][] hits;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        indexPath = Files.createTempDirectory("nooble-bench");
+        LuceneProperties properties = SyntheticCorpus.properties(indexPath,
+                "lucene.index.term-vectors", String.valueOf(termVectors),
+                "lucene.search.highlighter", highlighter);
+        indexer = new Indexer(properties);
+        indexer.init();
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            indexer.indexSource(corpus.text(40), "page_" + i, SyntheticCorpus.path(i), corpus.text(1));
+        }
+        // single shard index
+        IndexWriter indexWriter = indexer.getShards().get(0).getIndexWriter();
+        indexWriter.forceMerge(1);
+        indexWriter.commit();
+        System.out.printf("%nIndex size with term vectors %s: %d KB%n", termVectors,
+                SyntheticCorpus.size(indexPath) / 1024);
+        reader = DirectoryReader.open(indexWriter, true);
+        indexSearcher = new IndexSearcher(reader);
+        fragmentHighlighter = FragmentHighlighter.create(properties.getSearch(), new StandardAnalyzer());
+        queries = new Query[QUERIES];
+        hits = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new TermQuery(new Term(LuceneConstants.CONTENTS, corpus.word(i)));
+            TopDocs topDocs = indexSearcher.search(queries[i], HITS);
+            hits[i] = new int[topDocs.scoreDocs.length];
+            for (int j = 0; j < hits[i].length; j++) {
+                hits[i][j] = topDocs.scoreDocs[j].doc;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        indexer.close();
+        SyntheticCorpus.delete(indexPath);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS)
+    public String[] highlight() throws IOException {
+        int query = next++ % QUERIES;
+        return fragmentHighlighter.getFragments(indexSearcher, queries[query], hits[query]);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ghost.benchmark;
+
+import com.ghost.lucene.index.Indexer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Indexer#indexSource} with and without term vectors, with merges or in bulk load mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndexerBenchmark {
+
+    private static final int TEXTS = 1000;
+
+    @Param({"true", "false"})
+    public boolean termVectors;
+
+    @Param({"false", "true"})
+    public boolean bulkLoad;
+
+    private Path indexPath;
+    private Indexer indexer;
+    private String[] texts;
+    private int id;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        indexPath = Files.createTempDirectory("nooble-bench");
+        indexer = new Indexer(SyntheticCorpus.properties(indexPath,
+                "lucene.index.term-vectors", String.valueOf(termVectors)));
+        indexer.init();
+        if (bulkLoad) {
+            indexer.startBulkLoad();
+        }
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        texts = new String[TEXTS];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = corpus.text(40);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (bulkLoad) {
+            indexer.finishBulkLoad();
+        }
+        indexer.close();
+        SyntheticCorpus.delete(indexPath);
+    }
+
+    @Benchmark
+    public boolean indexSource() throws IOException {
+        int page = id++;
+        // page number keeps contents unique, so the source is never skipped as unchanged
+        String contents = texts[page % TEXTS] + page;
+        String path = SyntheticCorpus.path(page);
+        return indexer.indexSource(contents, "page_" + page, path, "title " + page);
+    }
+}
@@ -0,0 +1,49 @@
+package com.ghost.benchmark;
+
+import com.ghost.source.JsoupPage;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link JsoupPage} parsing and text, title and links extraction of a fetched page.
+ * Difference of parseAndExtract and parse is the cost of the extraction pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsoupPageBenchmark {
+
+    private static final int PAGES = 100;
+
+    private URL url;
+    private String[] html;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        url = new URL(SyntheticCorpus.path(0));
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        html = new String[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            html[i] = corpus.html(40, 50);
+        }
+    }
+
+    @Benchmark
+    public void parseAndExtract(Blackhole blackhole) {
+        JsoupPage page = new JsoupPage(url, html[next++ % PAGES]);
+        blackhole.consume(page.getText());
+        blackhole.consume(page.getTitle());
+        blackhole.consume(page.getLinks());
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html[next++ % PAGES], url.toString());
+    }
+}
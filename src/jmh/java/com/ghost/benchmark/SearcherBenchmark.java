@@ -0,0 +1,81 @@
+package com.ghost.benchmark;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.index.Indexer;
+import com.ghost.lucene.search.SearchPage;
+import com.ghost.lucene.search.Searcher;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the first page search by {@link Searcher#search} across query shapes,
+ * including stored fields loading and highlighting of the page
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearcherBenchmark {
+
+    private static final int DOCUMENTS = 5000;
+    private static final int QUERIES = 100;
+
+    @Param({"term", "phrase", "wildcard", "boolean"})
+    public String shape;
+
+    @Param({"classic", "postings"})
+    public String highlighter;
+
+    private Path indexPath;
+    private Indexer indexer;
+    private Searcher searcher;
+    private String[] queries;
+    private int perPage;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        indexPath = Files.createTempDirectory("nooble-bench");
+        LuceneProperties properties = SyntheticCorpus.properties(indexPath,
+                "lucene.search.highlighter", highlighter);
+        perPage = properties.getSearch().getPerPage();
+        indexer = new Indexer(properties);
+        indexer.init();
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            indexer.indexSource(corpus.text(40), "page_" + i, SyntheticCorpus.path(i), corpus.text(1));
+        }
+        indexer.commit();
+        searcher = new Searcher(properties, indexer);
+        searcher.init();
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = query(corpus, i);
+        }
+    }
+
+    private String query(SyntheticCorpus corpus, int i) {
+        switch (shape) {
+            case "phrase": return "\"" + corpus.word(i) + " " + corpus.randomWord() + "\"";
+            case "wildcard": return corpus.word(i).substring(0, 2) + "*";
+            case "boolean": return "+" + corpus.word(i) + " +" + corpus.word(i + 1) + " -" + corpus.word(i + 2);
+        }
+        return corpus.word(i);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searcher.close();
+        indexer.close();
+        SyntheticCorpus.delete(indexPath);
+    }
+
+    @Benchmark
+    public SearchPage search() throws IOException, ParseException {
+        return searcher.search(queries[next++ % QUERIES], null, perPage);
+    }
+}
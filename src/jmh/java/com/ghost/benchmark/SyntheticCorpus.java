@@ -0,0 +1,145 @@
+package com.ghost.benchmark;
+
+import com.ghost.lucene.LuceneProperties;
+import org.springframework.boot.bind.PropertiesConfigurationFactory;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertiesPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic synthetic corpus for benchmarks: pseudo words with Zipf-like frequencies,
+ * plain texts of sentences and html pages with links. Same seed gives the same corpus.
+ */
+public class SyntheticCorpus {
+
+    public static final long SEED = 42;
+    public static final String HOST = "http://bench.nooble";
+
+    private static final int VOCABULARY = 5000;
+    private static final String LUCENE_PROPERTIES = "/lucene.properties";
+
+    private final Random random = new Random(SEED);
+    private final String[] vocabulary = new String[VOCABULARY];
+
+    public SyntheticCorpus() {
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+    }
+
+    /**
+     * @param rank of the word, 0 is the most frequent
+     * @return word of the rank
+     */
+    public String word(int rank) {
+        return vocabulary[rank % vocabulary.length];
+    }
+
+    /**
+     * @return random word, frequent words are returned more often
+     */
+    public String randomWord() {
+        return vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1];
+    }
+
+    /**
+     * @param sentences number of sentences
+     * @return plain text of the sentences
+     */
+    public String text(int sentences) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            int words = 5 + random.nextInt(15);
+            for (int j = 0; j < words; j++) {
+                text.append(randomWord()).append(j == words - 1 ? ". " : " ");
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param sentences number of paragraphs
+     * @param links number of links to other pages of the corpus
+     * @return html page with title, navigation, paragraphs and links
+     */
+    public String html(int sentences, int links) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>")
+                .append(text(1))
+                .append("</title><script>var x = 1;</script></head><body><nav>");
+        for (int i = 0; i < links; i++) {
+            html.append("<a href=\"/page/").append(random.nextInt(10000)).append("\">")
+                    .append(randomWord()).append("</a> ");
+        }
+        html.append("</nav><div class=\"content\">");
+        for (int i = 0; i < sentences; i++) {
+            html.append("<p>").append(text(1)).append("</p>");
+        }
+        return html.append("</div></body></html>").toString();
+    }
+
+    /**
+     * @param id of the page
+     * @return url of the corpus page
+     */
+    public static String path(int id) {
+        return HOST + "/page/" + id;
+    }
+
+    /**
+     * Binds lucene.properties of the application, with index directory moved to the given path
+     * @param indexPath index directory
+     * @param overrides pairs of property name and value
+     * @return application properties
+     */
+    public static LuceneProperties properties(Path indexPath, String... overrides) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream stream = SyntheticCorpus.class.getResourceAsStream(LUCENE_PROPERTIES)) {
+            properties.load(stream);
+        }
+        properties.setProperty("lucene.index.directory-win", indexPath.toString());
+        properties.setProperty("lucene.index.directory-unix", indexPath.toString());
+        properties.setProperty("lucene.index.directory", indexPath.toString());
+        for (int i = 0; i + 1 < overrides.length; i += 2) {
+            properties.setProperty(overrides[i], overrides[i + 1]);
+        }
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new PropertiesPropertySource("benchmark", properties));
+        PropertiesConfigurationFactory<LuceneProperties> factory =
+                new PropertiesConfigurationFactory<>(LuceneProperties.class);
+        factory.setPropertySources(sources);
+        factory.setTargetName("lucene");
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+
+    /**
+     * @return size of all files in the directory
+     */
+    public static long size(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * Deletes directory with all files
+     */
+    public static void delete(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
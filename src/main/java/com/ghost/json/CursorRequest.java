@@ -0,0 +1,26 @@
+package com.ghost.json;
+
+/**
+ * Request for the next page of search results
+ */
+public class CursorRequest {
+
+    private String query;
+    private String cursor;
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+}
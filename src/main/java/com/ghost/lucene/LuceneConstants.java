@@ -6,4 +6,10 @@ public class LuceneConstants {
     public static final String SOURCE_NAME ="name";
     public static final String SOURCE_PATH ="path";
     public static final String SOURCE_TITLE="title";
+    public static final String SOURCE_HASH="hash";
+    // fetch metadata, doc values updated in place
+    public static final String SOURCE_ETAG="etag";
+    public static final String SOURCE_LAST_MODIFIED="lastModified";
+    public static final String SOURCE_CRAWL_TIME="crawlTime";
+    public static final String SOURCE_LINKS="links";
 }
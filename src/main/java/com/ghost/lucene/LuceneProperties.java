@@ -1,5 +1,10 @@
 package com.ghost.lucene;
 
+import com.ghost.lucene.index.IndexDirectories;
+import com.ghost.lucene.index.VisitedSet;
+import com.ghost.lucene.search.FragmentHighlighter;
+import com.ghost.source.PageFetcher;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -40,9 +45,49 @@ public class LuceneProperties {
         private int depth;
         private int depthMax;
         private int threads;
+        private int parseThreads;
+        private int parseQueue;
+        private int indexThreads;
+        private int indexQueue;
+        private int hostConcurrency;
+        private double hostRate;
+        private int hostBurst;
+        private boolean robots = true;
+        private long robotsExpire;
+        private long backoffMax;
+        private int retries;
+        private int frontierMax;
+        private VisitedSet.Type visited = VisitedSet.Type.EXACT;
+        private boolean termVectors = true;
+        private double ramBufferMb = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+        private int maxBufferedDocs = IndexWriterConfig.DISABLE_AUTO_FLUSH;
+        private double mergeSegmentsPerTier = 10;
+        private double maxMergedSegmentMb = 5 * 1024;
+        private int mergeThreads;
+        private long commitInterval;
+        private int commitDocs;
+        private boolean bulkLoad;
+        private boolean resumable;
+        private int shards = 1;
+        private int jobThreads;
+        private int jobQueue;
+        private int jobHistory;
+        private long visitedExpected;
+        private double visitedFpp;
+        private PageFetcher.Type fetcher = PageFetcher.Type.ASYNC;
+        private int fetchConnections;
+        private int fetchConnectionsPerHost;
+        private int fetchInFlight;
+        private int fetchTimeout;
+        private int maxBodySize;
+        private String userAgent;
         private String directoryWin;
         private String directoryUnix;
         private String directory;
+        private IndexDirectories.Type directoryType = IndexDirectories.Type.AUTO;
+        private double nrtCacheMb;
+        private double nrtCacheMergeMb;
+        private boolean warmUp;
 
         public int getDepth() {
             return depth;
@@ -68,6 +113,294 @@ public class LuceneProperties {
             this.threads = threads;
         }
 
+        public int getParseThreads() {
+            return parseThreads;
+        }
+
+        public void setParseThreads(int parseThreads) {
+            this.parseThreads = parseThreads;
+        }
+
+        public int getParseQueue() {
+            return parseQueue;
+        }
+
+        public void setParseQueue(int parseQueue) {
+            this.parseQueue = parseQueue;
+        }
+
+        public int getIndexThreads() {
+            return indexThreads;
+        }
+
+        public void setIndexThreads(int indexThreads) {
+            this.indexThreads = indexThreads;
+        }
+
+        public int getIndexQueue() {
+            return indexQueue;
+        }
+
+        public void setIndexQueue(int indexQueue) {
+            this.indexQueue = indexQueue;
+        }
+
+        public int getHostConcurrency() {
+            return hostConcurrency;
+        }
+
+        public void setHostConcurrency(int hostConcurrency) {
+            this.hostConcurrency = hostConcurrency;
+        }
+
+        public double getHostRate() {
+            return hostRate;
+        }
+
+        public void setHostRate(double hostRate) {
+            this.hostRate = hostRate;
+        }
+
+        public int getHostBurst() {
+            return hostBurst;
+        }
+
+        public void setHostBurst(int hostBurst) {
+            this.hostBurst = hostBurst;
+        }
+
+        public boolean isRobots() {
+            return robots;
+        }
+
+        public void setRobots(boolean robots) {
+            this.robots = robots;
+        }
+
+        public long getRobotsExpire() {
+            return robotsExpire;
+        }
+
+        public void setRobotsExpire(long robotsExpire) {
+            this.robotsExpire = robotsExpire;
+        }
+
+        public long getBackoffMax() {
+            return backoffMax;
+        }
+
+        public void setBackoffMax(long backoffMax) {
+            this.backoffMax = backoffMax;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public void setRetries(int retries) {
+            this.retries = retries;
+        }
+
+        public int getFrontierMax() {
+            return frontierMax;
+        }
+
+        public void setFrontierMax(int frontierMax) {
+            this.frontierMax = frontierMax;
+        }
+
+        public boolean isTermVectors() {
+            return termVectors;
+        }
+
+        public void setTermVectors(boolean termVectors) {
+            this.termVectors = termVectors;
+        }
+
+        public VisitedSet.Type getVisited() {
+            return visited;
+        }
+
+        public void setVisited(VisitedSet.Type visited) {
+            this.visited = visited;
+        }
+
+        public long getVisitedExpected() {
+            return visitedExpected;
+        }
+
+        public void setVisitedExpected(long visitedExpected) {
+            this.visitedExpected = visitedExpected;
+        }
+
+        public double getVisitedFpp() {
+            return visitedFpp;
+        }
+
+        public void setVisitedFpp(double visitedFpp) {
+            this.visitedFpp = visitedFpp;
+        }
+
+        public PageFetcher.Type getFetcher() {
+            return fetcher;
+        }
+
+        public void setFetcher(PageFetcher.Type fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        public int getFetchConnections() {
+            return fetchConnections;
+        }
+
+        public void setFetchConnections(int fetchConnections) {
+            this.fetchConnections = fetchConnections;
+        }
+
+        public int getFetchConnectionsPerHost() {
+            return fetchConnectionsPerHost;
+        }
+
+        public void setFetchConnectionsPerHost(int fetchConnectionsPerHost) {
+            this.fetchConnectionsPerHost = fetchConnectionsPerHost;
+        }
+
+        public int getFetchInFlight() {
+            return fetchInFlight;
+        }
+
+        public void setFetchInFlight(int fetchInFlight) {
+            this.fetchInFlight = fetchInFlight;
+        }
+
+        public int getFetchTimeout() {
+            return fetchTimeout;
+        }
+
+        public void setFetchTimeout(int fetchTimeout) {
+            this.fetchTimeout = fetchTimeout;
+        }
+
+        public int getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        public String getUserAgent() {
+            return userAgent;
+        }
+
+        public void setUserAgent(String userAgent) {
+            this.userAgent = userAgent;
+        }
+
+        public double getRamBufferMb() {
+            return ramBufferMb;
+        }
+
+        public void setRamBufferMb(double ramBufferMb) {
+            this.ramBufferMb = ramBufferMb;
+        }
+
+        public int getMaxBufferedDocs() {
+            return maxBufferedDocs;
+        }
+
+        public void setMaxBufferedDocs(int maxBufferedDocs) {
+            this.maxBufferedDocs = maxBufferedDocs;
+        }
+
+        public double getMergeSegmentsPerTier() {
+            return mergeSegmentsPerTier;
+        }
+
+        public void setMergeSegmentsPerTier(double mergeSegmentsPerTier) {
+            this.mergeSegmentsPerTier = mergeSegmentsPerTier;
+        }
+
+        public double getMaxMergedSegmentMb() {
+            return maxMergedSegmentMb;
+        }
+
+        public void setMaxMergedSegmentMb(double maxMergedSegmentMb) {
+            this.maxMergedSegmentMb = maxMergedSegmentMb;
+        }
+
+        public int getMergeThreads() {
+            return mergeThreads;
+        }
+
+        public void setMergeThreads(int mergeThreads) {
+            this.mergeThreads = mergeThreads;
+        }
+
+        public long getCommitInterval() {
+            return commitInterval;
+        }
+
+        public void setCommitInterval(long commitInterval) {
+            this.commitInterval = commitInterval;
+        }
+
+        public int getCommitDocs() {
+            return commitDocs;
+        }
+
+        public void setCommitDocs(int commitDocs) {
+            this.commitDocs = commitDocs;
+        }
+
+        public boolean isBulkLoad() {
+            return bulkLoad;
+        }
+
+        public void setBulkLoad(boolean bulkLoad) {
+            this.bulkLoad = bulkLoad;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public boolean isResumable() {
+            return resumable;
+        }
+
+        public void setResumable(boolean resumable) {
+            this.resumable = resumable;
+        }
+
+        public int getJobThreads() {
+            return jobThreads;
+        }
+
+        public void setJobThreads(int jobThreads) {
+            this.jobThreads = jobThreads;
+        }
+
+        public int getJobQueue() {
+            return jobQueue;
+        }
+
+        public void setJobQueue(int jobQueue) {
+            this.jobQueue = jobQueue;
+        }
+
+        public int getJobHistory() {
+            return jobHistory;
+        }
+
+        public void setJobHistory(int jobHistory) {
+            this.jobHistory = jobHistory;
+        }
+
         public String getDirectoryWin() {
             return directoryWin;
         }
@@ -91,26 +424,60 @@ public class LuceneProperties {
         public void setDirectory(String directory) {
             this.directory = directory;
         }
+
+        public IndexDirectories.Type getDirectoryType() {
+            return directoryType;
+        }
+
+        public void setDirectoryType(IndexDirectories.Type directoryType) {
+            this.directoryType = directoryType;
+        }
+
+        public double getNrtCacheMb() {
+            return nrtCacheMb;
+        }
+
+        public void setNrtCacheMb(double nrtCacheMb) {
+            this.nrtCacheMb = nrtCacheMb;
+        }
+
+        public double getNrtCacheMergeMb() {
+            return nrtCacheMergeMb;
+        }
+
+        public void setNrtCacheMergeMb(double nrtCacheMergeMb) {
+            this.nrtCacheMergeMb = nrtCacheMergeMb;
+        }
+
+        public boolean isWarmUp() {
+            return warmUp;
+        }
+
+        public void setWarmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+        }
     }
 
     // Search params
     public static class Search {
 
-        private int max;
         private int perPage;
         private int FragmentSize;
         private int maxFragments;
         private String fragmentSeparator;
         private String preFormat;
         private String postFormat;
-
-        public int getMax() {
-            return max;
-        }
-
-        public void setMax(int max) {
-            this.max = max;
-        }
+        private long refreshMaxStale;
+        private long searcherMaxAge;
+        private boolean prefetch;
+        private int prefetchThreads;
+        private int searchThreads;
+        private int searchQueue;
+        private int warmUpQueries;
+        private String warmUpFile;
+        private long cacheSizeMb;
+        private FragmentHighlighter.Type highlighter = FragmentHighlighter.Type.CLASSIC;
+        private int highlightMaxChars;
 
         public int getPerPage() {
             return perPage;
@@ -136,6 +503,94 @@ public class LuceneProperties {
             this.postFormat = postFormat;
         }
 
+        public long getRefreshMaxStale() {
+            return refreshMaxStale;
+        }
+
+        public void setRefreshMaxStale(long refreshMaxStale) {
+            this.refreshMaxStale = refreshMaxStale;
+        }
+
+        public long getSearcherMaxAge() {
+            return searcherMaxAge;
+        }
+
+        public void setSearcherMaxAge(long searcherMaxAge) {
+            this.searcherMaxAge = searcherMaxAge;
+        }
+
+        public boolean isPrefetch() {
+            return prefetch;
+        }
+
+        public void setPrefetch(boolean prefetch) {
+            this.prefetch = prefetch;
+        }
+
+        public int getPrefetchThreads() {
+            return prefetchThreads;
+        }
+
+        public void setPrefetchThreads(int prefetchThreads) {
+            this.prefetchThreads = prefetchThreads;
+        }
+
+        public int getSearchThreads() {
+            return searchThreads;
+        }
+
+        public void setSearchThreads(int searchThreads) {
+            this.searchThreads = searchThreads;
+        }
+
+        public int getSearchQueue() {
+            return searchQueue;
+        }
+
+        public void setSearchQueue(int searchQueue) {
+            this.searchQueue = searchQueue;
+        }
+
+        public int getWarmUpQueries() {
+            return warmUpQueries;
+        }
+
+        public void setWarmUpQueries(int warmUpQueries) {
+            this.warmUpQueries = warmUpQueries;
+        }
+
+        public String getWarmUpFile() {
+            return warmUpFile;
+        }
+
+        public void setWarmUpFile(String warmUpFile) {
+            this.warmUpFile = warmUpFile;
+        }
+
+        public long getCacheSizeMb() {
+            return cacheSizeMb;
+        }
+
+        public void setCacheSizeMb(long cacheSizeMb) {
+            this.cacheSizeMb = cacheSizeMb;
+        }
+
+        public FragmentHighlighter.Type getHighlighter() {
+            return highlighter;
+        }
+
+        public void setHighlighter(FragmentHighlighter.Type highlighter) {
+            this.highlighter = highlighter;
+        }
+
+        public int getHighlightMaxChars() {
+            return highlightMaxChars;
+        }
+
+        public void setHighlightMaxChars(int highlightMaxChars) {
+            this.highlightMaxChars = highlightMaxChars;
+        }
+
         public int getFragmentSize() {
             return FragmentSize;
         }
@@ -0,0 +1,102 @@
+package com.ghost.lucene.index;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Memory bounded visited set based on lock-free Bloom filter.
+ * Memory does not depend on the number of links, but with false positive probability
+ * a link may be reported as visited and skipped by the crawl.
+ */
+public class BloomVisitedSet implements VisitedSet {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * @param expectedLinks expected number of links in the crawl
+     * @param falsePositiveProbability acceptable probability to skip not visited link
+     * @throws IllegalArgumentException if the probability is not between 0 and 1 exclusive
+     */
+    public BloomVisitedSet(long expectedLinks, double falsePositiveProbability) {
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("lucene.index.visited-fpp must be between 0 and 1 exclusive: "
+                    + falsePositiveProbability);
+        }
+        long expected = Math.max(1, expectedLinks);
+        long optimalBits = (long) Math.ceil(-expected * Math.log(falsePositiveProbability) / (LN2 * LN2));
+        int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (optimalBits + 63) / 64));
+        bits = new AtomicLongArray(words);
+        bitCount = (long) words * 64;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * LN2));
+    }
+
+    @Override
+    public boolean add(String link) {
+        long hash = hash(link);
+        long hash1 = hash;
+        long hash2 = mix(hash);
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+            added |= setBit(bit);
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return size of the filter in bytes
+     */
+    public long getMemorySize() {
+        return bitCount / 8;
+    }
+
+    /**
+     * Sets the bit using CAS loop
+     * @return true if the bit was not set before
+     */
+    private boolean setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << (bit & 63);
+        long value;
+        do {
+            value = bits.get(word);
+            if ((value & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, value, value | mask));
+        return true;
+    }
+
+    /** 64 bit FNV-1a hash of the string chars */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /** MurmurHash3 finalizer, spreads bits of the hash */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
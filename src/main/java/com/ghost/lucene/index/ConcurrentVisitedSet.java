@@ -0,0 +1,22 @@
+package com.ghost.lucene.index;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact visited set, holds every link on the heap
+ */
+public class ConcurrentVisitedSet implements VisitedSet {
+
+    private final Set<String> links = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String link) {
+        return links.add(link);
+    }
+
+    @Override
+    public long size() {
+        return links.size();
+    }
+}
@@ -0,0 +1,66 @@
+package com.ghost.lucene.index;
+
+import java.net.URL;
+
+/**
+ * Crawl frontier entry: link to be indexed and remaining index depth below it
+ */
+public class CrawlLink {
+
+    private final URL url;
+    private final int depth;
+    private final int attempt;
+
+    public CrawlLink(URL url, int depth) {
+        this(url, depth, 0);
+    }
+
+    private CrawlLink(URL url, int depth, int attempt) {
+        this.url = url;
+        this.depth = depth;
+        this.attempt = attempt;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return number of previous throttled attempts to load the link
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * @return the same link to be loaded again
+     */
+    public CrawlLink retry() {
+        return new CrawlLink(url, depth, attempt + 1);
+    }
+
+    /**
+     * @return true if links found on this page should be indexed too
+     */
+    public boolean isExpandable() {
+        return depth > 0;
+    }
+
+    /**
+     * Creates frontier entry for the link found on this page
+     * @param link found on this page
+     * @return child entry with decreased depth
+     */
+    public CrawlLink child(URL link) {
+        return new CrawlLink(link, depth - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "[depth: " + depth + "] " + url;
+    }
+}
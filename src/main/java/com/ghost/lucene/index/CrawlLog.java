@@ -0,0 +1,337 @@
+package com.ghost.lucene.index;
+
+import com.ghost.NoobleApplication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Append-only memory mapped log of one crawl, so an interrupted crawl is resumed after restart.
+ * Records every link added to the frontier and every finished link. After every index commit a checkpoint
+ * is appended: links finished before the commit started are in the index and are not loaded again,
+ * links finished after the last checkpoint are loaded again on resume. Visited set is restored from added links.
+ * A record is complete once its type byte is written, the type is written last, so a record torn by a crash
+ * ends the log. The log is deleted when the crawl is finished and committed.
+ * Appends are synchronized, the crawler and the commit thread write the log.
+ * The log is read by int offsets, so it is limited to 2 GB, the rest of a larger crawl is not logged.
+ */
+public class CrawlLog implements Closeable, Indexer.CommitListener {
+
+    private static final byte END = 0;
+    private static final byte SEED = 1;
+    private static final byte ADD = 2;
+    private static final byte DONE = 3;
+    private static final byte CHECKPOINT = 4;
+
+    // log file grows by mapped regions of this size
+    private static final int REGION_SIZE = 8 * 1024 * 1024;
+    private static final String EXTENSION = ".log";
+    private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean resumed;
+    private final long maxSize;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private long commitMark;
+    private boolean full;
+
+    private CrawlLog(Path path, FileChannel channel, long position, boolean resumed, long maxSize) {
+        this.path = path;
+        this.channel = channel;
+        this.position = position;
+        this.resumed = resumed;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Opens the log of the seed, the log of an interrupted crawl of the seed is resumed
+     * @param directory of crawl logs
+     * @param seed normalized link the crawl starts from
+     * @return log to be closed by the caller
+     * @throws IOException
+     */
+    public static CrawlLog open(Path directory, URL seed) throws IOException {
+        return open(directory, seed, MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize of the log file in bytes, at most 2 GB
+     */
+    static CrawlLog open(Path directory, URL seed, long maxSize) throws IOException {
+        Files.createDirectories(directory);
+        Path path = getPath(directory, seed);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end = channel.size() > 0 ? findEnd(channel, seed) : -1;
+            if (end > 0) {
+                return new CrawlLog(path, channel, end, true, Math.min(maxSize, MAX_SIZE));
+            }
+            channel.truncate(0);
+            CrawlLog log = new CrawlLog(path, channel, 0, false, Math.min(maxSize, MAX_SIZE));
+            log.append(SEED, 0, seed.toString());
+            return log;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param directory of crawl logs
+     * @param seed normalized link the crawl starts from
+     * @return true if there is a log of an interrupted crawl of the seed
+     */
+    public static boolean exists(Path directory, URL seed) {
+        return Files.exists(getPath(directory, seed));
+    }
+
+    /**
+     * @return log file of the seed, named by hash of the seed
+     */
+    private static Path getPath(Path directory, URL seed) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest(seed.toString().getBytes(StandardCharsets.UTF_8))) {
+            name.append(String.format("%02x", b));
+        }
+        return directory.resolve(name.append(EXTENSION).toString());
+    }
+
+    /**
+     * @return true if the log continues an interrupted crawl, see {@link #replay(Consumer, Consumer)}
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Restores state of the interrupted crawl
+     * @param visited receives every added link
+     * @param frontier receives added links, which are not finished before the last checkpoint, in order of adding
+     * @throws IOException
+     */
+    public void replay(Consumer<String> visited, Consumer<CrawlLink> frontier) throws IOException {
+        ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+        // offsets of finished links, to compare with the last checkpoint
+        Map<String, Long> finished = new HashMap<>();
+        long checkpoint = 0;
+        while (log.hasRemaining()) {
+            int offset = log.position();
+            byte type = log.get();
+            if (type == CHECKPOINT) {
+                checkpoint = log.getLong();
+                continue;
+            }
+            if (type == ADD) {
+                log.getInt();
+            }
+            String link = readString(log);
+            if (type == DONE) {
+                finished.put(link, (long) offset);
+            }
+        }
+        log.rewind();
+        int pending = 0;
+        while (log.hasRemaining()) {
+            byte type = log.get();
+            if (type == CHECKPOINT) {
+                log.getLong();
+                continue;
+            }
+            int depth = type == ADD ? log.getInt() : 0;
+            String link = readString(log);
+            if (type != ADD) {
+                continue;
+            }
+            visited.accept(link);
+            Long finishedOffset = finished.get(link);
+            if (finishedOffset == null || finishedOffset >= checkpoint) {
+                try {
+                    frontier.accept(new CrawlLink(new URL(link), depth));
+                    pending++;
+                } catch (MalformedURLException e) {
+                    NoobleApplication.log.warn("Skipped malformed link of crawl log: {}", link);
+                }
+            }
+        }
+        NoobleApplication.log.info("Crawl log {} replayed: {} links to load", path, pending);
+    }
+
+    /**
+     * @param link added to the frontier
+     */
+    public void added(CrawlLink link) throws IOException {
+        append(ADD, link.getDepth(), link.getUrl().toString());
+    }
+
+    /**
+     * @param link indexed or failed, not to be loaded again after the next checkpoint
+     */
+    public void finished(CrawlLink link) throws IOException {
+        append(DONE, 0, link.getUrl().toString());
+    }
+
+    @Override
+    public synchronized void beforeCommit() {
+        commitMark = position;
+    }
+
+    /**
+     * Appends checkpoint of the links finished before the commit and flushes the log to disk
+     */
+    @Override
+    public synchronized void afterCommit() throws IOException {
+        if (!channel.isOpen() || !ensureCapacity(1 + Long.BYTES)) {
+            return;
+        }
+        int offset = (int) (position - regionStart);
+        region.putLong(offset + 1, commitMark);
+        region.put(offset, CHECKPOINT);
+        position += 1 + Long.BYTES;
+        region.force();
+    }
+
+    private synchronized void append(byte type, int depth, String link) throws IOException {
+        byte[] bytes = link.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + (type == ADD ? Integer.BYTES : 0) + Integer.BYTES + bytes.length;
+        if (!ensureCapacity(size)) {
+            return;
+        }
+        ByteBuffer record = region.duplicate();
+        int offset = (int) (position - regionStart);
+        record.position(offset + 1);
+        if (type == ADD) {
+            record.putInt(depth);
+        }
+        record.putInt(bytes.length);
+        record.put(bytes);
+        region.put(offset, type);
+        position += size;
+    }
+
+    /**
+     * Maps next region of the file if the record does not fit the current one
+     * @return false if the log is full, the record is not logged
+     */
+    private boolean ensureCapacity(int size) throws IOException {
+        if (region != null && position + size <= regionStart + region.capacity()) {
+            return true;
+        }
+        // one more byte keeps the end of the log after the record
+        if (full || position + size + 1 > maxSize) {
+            if (!full) {
+                full = true;
+                NoobleApplication.log.warn("Crawl log {} is full at {} bytes, the rest of the crawl is not logged",
+                        path, position);
+            }
+            return false;
+        }
+        if (region != null) {
+            region.force();
+        }
+        regionStart = position;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart,
+                Math.min(Math.max(REGION_SIZE, size + 1), maxSize - regionStart));
+        return true;
+    }
+
+    /**
+     * Reads the file up to the first torn or missing record. Mapped pages may reach the disk in any order
+     * after a crash, so a record may have its type byte and miss the rest, the log is cut before such record.
+     * @return end of the valid records or -1 if the log is not of the seed
+     */
+    private static long findEnd(FileChannel channel, URL seed) throws IOException {
+        if (channel.size() > MAX_SIZE) {
+            throw new IOException("Crawl log is too large");
+        }
+        ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        try {
+            if (log.get() != SEED || !seed.toString().equals(readString(log))) {
+                return -1;
+            }
+        } catch (BufferUnderflowException e) {
+            // torn seed record
+            return -1;
+        }
+        while (log.hasRemaining()) {
+            int start = log.position();
+            try {
+                byte type = log.get();
+                if (type <= END || type > CHECKPOINT) {
+                    return start;
+                }
+                if (type == CHECKPOINT) {
+                    long checkpoint = log.getLong();
+                    if (checkpoint < 0 || checkpoint > start) {
+                        return start;
+                    }
+                    continue;
+                }
+                if (type == ADD) {
+                    log.getInt();
+                }
+                readString(log);
+            } catch (BufferUnderflowException e) {
+                NoobleApplication.log.warn("Crawl log is cut at torn record: {}", start);
+                return start;
+            }
+        }
+        return log.position();
+    }
+
+    /**
+     * @throws BufferUnderflowException if the length is not valid or the string is not complete
+     */
+    private static String readString(ByteBuffer log) {
+        int length = log.getInt();
+        if (length < 0 || length > log.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        log.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the log, it is kept to resume the crawl
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (region != null) {
+            region.force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the log of the finished crawl
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
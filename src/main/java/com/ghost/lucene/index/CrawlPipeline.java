@@ -0,0 +1,149 @@
+package com.ghost.lucene.index;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.source.PageFetcher;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Staged crawl workers: fetch, parse and index steps of every {@link IndexTask} run by separate worker pools,
+ * so slow hosts do not hold back indexing and a slow analyzer does not hold back network I/O.
+ * Fetch workers are a fixed thread pool, parse and index stages are
+ * {@link CrawlStage}s with bounded queues, a full queue blocks the stage before it.
+ * Progress of every link is reported to the {@link Listener}.
+ */
+public class CrawlPipeline {
+
+    private final Indexer indexer;
+    private final PageFetcher fetcher;
+    private final Listener listener;
+    private final ExecutorService fetchExecutor;
+    private final CrawlStage parseStage;
+    private final CrawlStage indexStage;
+
+    /**
+     * @param indexer to index pages with
+     * @param fetcher to load pages with
+     * @param concurrency number of fetch worker threads
+     * @param properties index params: threads and queue capacity of parse and index stages
+     * @param listener to be notified from worker threads
+     */
+    public CrawlPipeline(Indexer indexer, PageFetcher fetcher, int concurrency,
+                         LuceneProperties.Index properties, Listener listener) {
+        this.indexer = indexer;
+        this.fetcher = fetcher;
+        this.listener = listener;
+        this.fetchExecutor = Executors.newFixedThreadPool(concurrency);
+        this.parseStage = new CrawlStage("parse", properties.getParseThreads(), properties.getParseQueue());
+        this.indexStage = new CrawlStage("index", properties.getIndexThreads(), properties.getIndexQueue());
+    }
+
+    /**
+     * Starts loading of the link, the caller bounds the number of links in progress
+     * @param link to index
+     */
+    public void submit(CrawlLink link) {
+        IndexTask task = new IndexTask(link, indexer, fetcher);
+        try {
+            fetchExecutor.execute(() -> fetch(task));
+        } catch (RejectedExecutionException e) {
+            listener.fetched(link, e);
+            listener.done(link, e);
+        }
+    }
+
+    private void fetch(IndexTask task) {
+        CrawlLink link = task.getLink();
+        try {
+            task.fetch();
+        } catch (Exception e) {
+            listener.fetched(link, e);
+            listener.done(link, e);
+            return;
+        }
+        listener.fetched(link, null);
+        try {
+            parseStage.submit(() -> parse(task));
+        } catch (InterruptedException e) {
+            listener.done(link, e);
+        }
+    }
+
+    private void parse(IndexTask task) {
+        CrawlLink link = task.getLink();
+        try {
+            listener.parsed(link, task.parse());
+            indexStage.submit(() -> index(task));
+        } catch (Exception e) {
+            listener.done(link, e);
+        }
+    }
+
+    private void index(IndexTask task) {
+        try {
+            task.index();
+        } catch (Exception e) {
+            listener.done(task.getLink(), e);
+            return;
+        }
+        listener.done(task.getLink(), null);
+    }
+
+    /**
+     * @return parse and index stages to watch their load
+     */
+    public List<CrawlStage> getStages() {
+        return Arrays.asList(parseStage, indexStage);
+    }
+
+    /**
+     * @return max number of parsed or fetched pages held by parse and index stages
+     */
+    public int getCapacity() {
+        int capacity = 0;
+        for (CrawlStage stage : getStages()) {
+            capacity += stage.getThreads() + stage.getQueueCapacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * Stops all the workers, links in progress are not reported. Fetch workers are interrupted.
+     */
+    public void shutdownNow() {
+        fetchExecutor.shutdownNow();
+        parseStage.shutdown();
+        indexStage.shutdown();
+    }
+
+    /**
+     * Progress of the links, called by the worker threads
+     */
+    public interface Listener {
+
+        /**
+         * Page is loaded or failed to load, its host is not used by the link any more
+         * @param link of the page
+         * @param error null if the page is loaded
+         */
+        void fetched(CrawlLink link, Exception error);
+
+        /**
+         * @param link of the parsed page
+         * @param links found on the page
+         */
+        void parsed(CrawlLink link, Collection<CrawlLink> links);
+
+        /**
+         * Link left the pipeline, called once for every submitted link
+         * @param link of the page
+         * @param error null if the page is indexed
+         */
+        void done(CrawlLink link, Exception error);
+    }
+}
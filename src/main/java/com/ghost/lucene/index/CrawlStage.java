@@ -0,0 +1,98 @@
+package com.ghost.lucene.index;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One stage of the {@link CrawlPipeline}: fixed number of worker threads taking tasks from a bounded queue.
+ * Submitting to a full queue blocks, so a slow stage holds back the stage before it instead of buffering
+ * all the pages in memory.
+ */
+public class CrawlStage {
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param name of the stage, prefix of the worker thread names
+     * @param threads number of worker threads
+     * @param queueCapacity max number of tasks waiting for a worker
+     */
+    public CrawlStage(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "crawl-" + name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // workers wait on the queue, so tasks are put into it directly
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Queues the task, waits while the queue is full
+     * @param task to run by a worker
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void submit(Runnable task) throws InterruptedException {
+        queue.put(task);
+    }
+
+    /**
+     * Stops the workers, queued tasks are not run. Running tasks are not interrupted,
+     * interrupt of Lucene file channels closes the index writer.
+     */
+    public void shutdown() {
+        queue.clear();
+        executor.shutdown();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return number of tasks waiting for a worker
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of workers running a task
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return approximate number of finished tasks
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getActiveCount() + "/" + threads + " queue " + getQueueSize() + "/" + queueCapacity;
+    }
+}
@@ -0,0 +1,405 @@
+package com.ghost.lucene.index;
+
+import com.ghost.NoobleApplication;
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.source.FetchStatusException;
+import com.ghost.source.PageFetcher;
+import com.ghost.source.RobotsRules;
+import com.ghost.source.URLNormalizer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Breadth-first crawl engine. Keeps one frontier of (URL, depth) links and a single {@link CrawlPipeline}
+ * shared by the whole crawl, so number of threads does not depend on the crawl depth.
+ * Pages are loaded by lucene.index.threads fetch workers, then parsed and indexed
+ * by separate stages. Number of pages in progress is bounded by the fetch concurrency and the stage queues.
+ * Frontier is a {@link HostScheduler}: links are loaded in round-robin order of the hosts, within robots.txt rules,
+ * per host rate and concurrency limits. Throttled pages are retried after the host backoff.
+ * Frontier is owned by the calling thread only, workers just report progress and found links.
+ * Every link is normalized and scheduled only once per crawl, see {@link VisitedSet}.
+ * Crawl with a {@link CrawlLog} is resumable: added and finished links are logged, a crawl interrupted
+ * by a crash or shutdown continues from the logged frontier without loading committed pages again.
+ */
+public class Crawler implements Callable<Integer> {
+
+    // progress is logged every PROGRESS_STEP processed pages
+    private static final int PROGRESS_STEP = 50;
+
+    private final Indexer indexer;
+    private final PageFetcher fetcher;
+    private final RobotsCache robotsCache;
+    private final CrawlLink seed;
+    private final int concurrency;
+    private final int retries;
+    private final VisitedSet visitedSet;
+    private final HostScheduler frontier;
+    private final LuceneProperties.Index properties;
+    private final CrawlLog crawlLog;
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private volatile CrawlPipeline pipeline;
+    private volatile boolean cancelled;
+
+    private final AtomicInteger fetchedCount = new AtomicInteger();
+    private final AtomicInteger indexedCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private final AtomicInteger throttledCount = new AtomicInteger();
+    private final AtomicInteger robotsDeniedCount = new AtomicInteger();
+    private volatile int frontierSize;
+    private volatile int inFlight;
+    private volatile int pending;
+    private volatile long startTime;
+
+    /**
+     * @param seed link to start crawl from
+     * @param depth max link depth from the seed
+     * @param indexer to index pages with
+     * @param fetcher to load pages with, shared by the workers
+     * @param robotsCache robots.txt rules of the hosts, shared by the crawls
+     * @param properties index params: number of fetch threads,
+     *                   per host concurrency and rate, retries, frontier size and visited set type
+     */
+    public Crawler(URL seed, int depth, Indexer indexer, PageFetcher fetcher, RobotsCache robotsCache,
+                   LuceneProperties.Index properties) {
+        this(seed, depth, indexer, fetcher, robotsCache, null, properties);
+    }
+
+    /**
+     * Creates resumable crawl
+     * @param seed link to start crawl from
+     * @param depth max link depth from the seed, ignored if the crawl is resumed
+     * @param indexer to index pages with
+     * @param fetcher to load pages with, shared by the workers
+     * @param robotsCache robots.txt rules of the hosts, shared by the crawls
+     * @param crawlLog log of the crawl, deleted when the crawl is finished or closed otherwise, may be null
+     * @param properties index params
+     */
+    public Crawler(URL seed, int depth, Indexer indexer, PageFetcher fetcher, RobotsCache robotsCache,
+                   CrawlLog crawlLog, LuceneProperties.Index properties) {
+        this.crawlLog = crawlLog;
+        this.seed = new CrawlLink(URLNormalizer.normalizeOrSelf(seed), depth);
+        this.indexer = indexer;
+        this.fetcher = fetcher;
+        this.robotsCache = robotsCache;
+        this.concurrency = Math.max(1, properties.getThreads());
+        this.retries = properties.getRetries();
+        this.properties = properties;
+        this.visitedSet = VisitedSet.create(properties);
+        this.frontier = new HostScheduler(robotsCache, properties.getHostRate(), properties.getHostBurst(),
+                properties.getHostConcurrency(), properties.getBackoffMax(), properties.getFrontierMax());
+    }
+
+    /**
+     * Runs the crawl until the frontier is exhausted or the crawl is cancelled. Blocks the calling thread.
+     * @return number of indexed pages
+     * @throws InterruptedException if crawl was interrupted, running tasks are cancelled
+     * @throws IOException if the crawl log could not be written
+     */
+    @Override
+    public Integer call() throws InterruptedException, IOException {
+        startTime = System.currentTimeMillis();
+        CrawlPipeline.Listener listener = new CrawlPipeline.Listener() {
+            @Override
+            public void fetched(CrawlLink link, Exception error) {
+                events.add(() -> onFetched(link, error));
+            }
+
+            @Override
+            public void parsed(CrawlLink link, Collection<CrawlLink> links) {
+                events.add(() -> enqueue(links));
+            }
+
+            @Override
+            public void done(CrawlLink link, Exception error) {
+                events.add(() -> onDone(link, error));
+            }
+        };
+        pipeline = new CrawlPipeline(indexer, fetcher, concurrency, properties, listener);
+        // fetched pages waiting for parse and index stages are bounded too
+        int maxPending = concurrency + pipeline.getCapacity();
+        try {
+            start();
+            while (!cancelled && (!frontier.isEmpty() || pending > 0)) {
+                long now = System.currentTimeMillis();
+                CrawlLink link;
+                while (inFlight < concurrency && pending < maxPending && (link = frontier.poll(now)) != null) {
+                    pipeline.submit(link);
+                    inFlight++;
+                    pending++;
+                }
+                frontierSize = frontier.size();
+                // wait for progress of a page or until a host of the frontier gets ready
+                long readyTime = inFlight < concurrency && pending < maxPending
+                        ? frontier.nextReadyTime(now) : Long.MAX_VALUE;
+                if (pending == 0 && readyTime == Long.MAX_VALUE) {
+                    continue;
+                }
+                Event event = readyTime == Long.MAX_VALUE ? events.take()
+                        : events.poll(Math.max(1, readyTime - now), TimeUnit.MILLISECONDS);
+                while (event != null) {
+                    event.run();
+                    event = events.poll();
+                }
+            }
+        } finally {
+            pipeline.shutdownNow();
+            closeLog();
+        }
+        frontierSize = frontier.size();
+        logProgress();
+        return indexedCount.get();
+    }
+
+    /**
+     * Stops the crawl from another thread without interrupting it: pages in progress are dropped,
+     * the crawl log is kept to resume the crawl. Interrupt of the index workers would close the index writer.
+     */
+    public void cancel() {
+        cancelled = true;
+        // wakes up the crawl thread
+        events.add(() -> {});
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Puts the seed to the frontier or restores the frontier of the interrupted crawl
+     */
+    private void start() throws IOException {
+        if (crawlLog == null) {
+            visitedSet.add(seed.getUrl().toString());
+            frontier.add(seed);
+            return;
+        }
+        indexer.addCommitListener(crawlLog);
+        if (crawlLog.isResumed()) {
+            crawlLog.replay(visitedSet::add, link -> {
+                if (!frontier.add(link)) {
+                    droppedCount.incrementAndGet();
+                }
+            });
+            NoobleApplication.log.info("Crawl {} resumed: frontier {}, visited {}", seed.getUrl(), frontier.size(),
+                    visitedSet.size());
+        } else {
+            visitedSet.add(seed.getUrl().toString());
+            frontier.add(seed);
+            crawlLog.added(seed);
+        }
+    }
+
+    /**
+     * Commits the index, so the finished pages are checkpointed. Deletes the log of the finished crawl,
+     * the log of the interrupted crawl is kept
+     */
+    private void closeLog() throws IOException {
+        if (crawlLog == null) {
+            return;
+        }
+        try {
+            indexer.commit();
+        } finally {
+            indexer.removeCommitListener(crawlLog);
+        }
+        if (frontier.isEmpty() && pending == 0) {
+            crawlLog.delete();
+        } else {
+            crawlLog.close();
+            NoobleApplication.log.info("Crawl {} interrupted, frontier {} is kept to resume", seed.getUrl(),
+                    frontier.size() + pending);
+        }
+    }
+
+    private void onFetched(CrawlLink link, Exception error) {
+        inFlight--;
+        frontier.finished(link);
+        if (error == null) {
+            fetchedCount.incrementAndGet();
+            frontier.succeeded(link.getUrl());
+        }
+    }
+
+    private void onDone(CrawlLink link, Exception error) throws IOException {
+        pending--;
+        if (error == null) {
+            indexedCount.incrementAndGet();
+        } else if (retryThrottled(link, error)) {
+            return;
+        } else {
+            errorCount.incrementAndGet();
+            NoobleApplication.log.error("Error indexing page: {}", error.getMessage());
+        }
+        if (crawlLog != null) {
+            crawlLog.finished(link);
+        }
+        if (getProcessedCount() % PROGRESS_STEP == 0) {
+            logProgress();
+        }
+    }
+
+    /**
+     * Backs off the host of the throttled page and schedules the page again if it has attempts left
+     * @param link of the failed page
+     * @param cause of the failure
+     * @return true if the page is scheduled again
+     */
+    private boolean retryThrottled(CrawlLink link, Throwable cause) {
+        if (!(cause instanceof FetchStatusException) || !((FetchStatusException) cause).isThrottled()) {
+            return false;
+        }
+        throttledCount.incrementAndGet();
+        long delay = frontier.backoff(link.getUrl(), ((FetchStatusException) cause).getRetryAfter());
+        if (link.getAttempt() >= retries) {
+            return false;
+        }
+        NoobleApplication.log.warn("Host {} throttled crawl, backoff {} ms: {}", link.getUrl().getHost(), delay,
+                cause.getMessage());
+        frontier.retry(link.retry());
+        frontierSize = frontier.size();
+        return true;
+    }
+
+    /**
+     * Adds not visited links to the frontier, links denied by already loaded robots.txt are skipped
+     * @param links found on the page
+     */
+    private void enqueue(Collection<CrawlLink> links) throws IOException {
+        for (CrawlLink link : links) {
+            URL url = URLNormalizer.normalizeOrSelf(link.getUrl());
+            if (!visitedSet.add(url.toString())) {
+                continue;
+            }
+            RobotsRules rules = robotsCache.getIfLoaded(url);
+            if (rules != null && !rules.isTemporary() && !rules.isAllowed(RobotsCache.getPath(url))) {
+                robotsDeniedCount.incrementAndGet();
+                continue;
+            }
+            CrawlLink child = new CrawlLink(url, link.getDepth());
+            if (!frontier.add(child)) {
+                droppedCount.incrementAndGet();
+            } else if (crawlLog != null) {
+                crawlLog.added(child);
+            }
+        }
+    }
+
+    private void logProgress() {
+        NoobleApplication.log.info("Crawl {}: indexed {}, errors {}, frontier {}, in progress {}, dropped {}, visited {}, "
+                + "hosts {}, throttled {}, robots denied {}, {} pages/s by {} workers, stages {}", seed.getUrl(),
+                getIndexedCount(), getErrorCount(), getFrontierSize(), getInFlight(), getDroppedCount(),
+                getVisitedCount(), getHostCount(), getThrottledCount(), getRobotsDeniedCount(),
+                String.format("%.1f", getPagesPerSecond()), concurrency, getStages());
+    }
+
+    private int getProcessedCount() {
+        return indexedCount.get() + errorCount.get();
+    }
+
+    /**
+     * @return number of loaded pages
+     */
+    public int getFetchedCount() {
+        return fetchedCount.get();
+    }
+
+    public int getIndexedCount() {
+        return indexedCount.get();
+    }
+
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    public int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return number of 429 and 503 responses
+     */
+    public int getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * @return number of links disallowed by robots.txt
+     */
+    public int getRobotsDeniedCount() {
+        return robotsDeniedCount.get() + frontier.getDeniedCount();
+    }
+
+    /**
+     * @return number of hosts seen by the crawl
+     */
+    public int getHostCount() {
+        return frontier.getHostCount();
+    }
+
+    public int getFrontierSize() {
+        return frontierSize;
+    }
+
+    /**
+     * @return number of pages being loaded
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return number of pages being loaded, parsed or indexed, or waiting for parse and index stages
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return parse and index stages to watch their load, empty if the crawl is not started
+     */
+    public List<CrawlStage> getStages() {
+        CrawlPipeline pipeline = this.pipeline;
+        return pipeline == null ? Collections.emptyList() : pipeline.getStages();
+    }
+
+    public long getVisitedCount() {
+        return visitedSet.size();
+    }
+
+    /**
+     * @return max number of pages processed at the same time
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return crawl time in ms, 0 if the crawl is not started
+     */
+    public long getElapsedTime() {
+        return startTime == 0 ? 0 : System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * @return throughput of the crawl: indexed and failed pages per second
+     */
+    public double getPagesPerSecond() {
+        long elapsedTime = getElapsedTime();
+        return elapsedTime == 0 ? 0 : getProcessedCount() * 1000.0 / elapsedTime;
+    }
+
+    /**
+     * Progress reported by the workers, handled by the crawl thread
+     */
+    private interface Event {
+
+        void run() throws IOException;
+    }
+}
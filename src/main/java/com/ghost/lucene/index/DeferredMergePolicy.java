@@ -0,0 +1,51 @@
+package com.ghost.lucene.index;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergePolicyWrapper;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.SegmentInfos;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merge policy which skips natural merges while a bulk load is running, so flushed segments are not merged
+ * again and again during a large crawl. Merges are selected by the wrapped policy after the last bulk load ends,
+ * see {@link IndexWriter#maybeMerge()}. Forced merges are not deferred.
+ */
+public class DeferredMergePolicy extends MergePolicyWrapper {
+
+    private final AtomicInteger bulkLoads = new AtomicInteger();
+
+    /**
+     * @param in policy selecting the merges
+     */
+    public DeferredMergePolicy(MergePolicy in) {
+        super(in);
+    }
+
+    /**
+     * Starts deferring merges, bulk loads may overlap
+     */
+    public void startBulkLoad() {
+        bulkLoads.incrementAndGet();
+    }
+
+    /**
+     * @return true if the last running bulk load is finished and merges are selected again
+     */
+    public boolean finishBulkLoad() {
+        return bulkLoads.decrementAndGet() == 0;
+    }
+
+    public boolean isDeferred() {
+        return bulkLoads.get() > 0;
+    }
+
+    @Override
+    public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, IndexWriter writer)
+            throws IOException {
+        return isDeferred() ? null : super.findMerges(mergeTrigger, segmentInfos, writer);
+    }
+}
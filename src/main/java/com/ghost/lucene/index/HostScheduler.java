@@ -0,0 +1,280 @@
+package com.ghost.lucene.index;
+
+import com.ghost.source.RobotsRules;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Polite crawl frontier. Keeps a queue of links per host and hands out links of ready hosts in round-robin order,
+ * so a crawl spreads its load over all the known hosts instead of sending every request to one of them.
+ * A host is ready when its robots.txt is loaded and not failed with a server error, it has fewer pages in progress
+ * than the per host concurrency, its token bucket has a token and it is not backed off.
+ * Crawl-delay of robots.txt lowers the rate of the host.
+ * Throttled hosts (429, 503) are backed off for a doubling time, or the time they asked by Retry-After,
+ * the backoff is halved by every successful page.
+ * Not thread safe, owned by the {@link Crawler} thread.
+ */
+public class HostScheduler {
+
+    // first backoff of a throttled host (ms)
+    private static final long MIN_BACKOFF = 1000;
+
+    // time to check again a host which robots.txt is being loaded (ms)
+    private static final long ROBOTS_WAIT = 20;
+
+    private final RobotsCache robotsCache;
+    private final double rate;
+    private final int burst;
+    private final int concurrency;
+    private final long backoffMax;
+    private final int capacity;
+
+    private final Map<String, Host> hosts = new HashMap<>();
+    // hosts with queued links in round-robin order
+    private final Queue<Host> ring = new ArrayDeque<>();
+    private int size;
+    private int deniedCount;
+
+    /**
+     * @param robotsCache rules of the hosts
+     * @param rate max pages per second of one host, 0 or less for no limit
+     * @param burst max number of pages of one host sent at once after idle time
+     * @param concurrency max number of pages of one host in progress, 0 or less for no limit
+     * @param backoffMax max backoff time of a throttled host (ms)
+     * @param capacity max number of queued links, new links over it are dropped
+     */
+    public HostScheduler(RobotsCache robotsCache, double rate, int burst, int concurrency, long backoffMax,
+                         int capacity) {
+        this.robotsCache = robotsCache;
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.concurrency = concurrency;
+        this.backoffMax = backoffMax;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues the link to its host
+     * @param link to load
+     * @return false if the frontier is full and the link is dropped
+     */
+    public boolean add(CrawlLink link) {
+        if (size >= capacity) {
+            return false;
+        }
+        host(link.getUrl()).enqueue(link, false);
+        return true;
+    }
+
+    /**
+     * Queues the link to be loaded again before other links of its host, even if the frontier is full
+     * @param link throttled link
+     */
+    public void retry(CrawlLink link) {
+        host(link.getUrl()).enqueue(link, true);
+    }
+
+    /**
+     * Takes the next link of a ready host and counts it in progress. Links denied by robots.txt are skipped.
+     * @param now current time in ms
+     * @return link to load or null if no host is ready
+     */
+    public CrawlLink poll(long now) {
+        for (int i = ring.size(); i > 0; i--) {
+            Host host = ring.poll();
+            CrawlLink link = host.poll(now);
+            if (host.queue.isEmpty()) {
+                host.queued = false;
+            } else {
+                ring.add(host);
+            }
+            if (link != null) {
+                return link;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param now current time in ms
+     * @return time some host may become ready, Long.MAX_VALUE if all the hosts wait for pages in progress
+     */
+    public long nextReadyTime(long now) {
+        long readyTime = Long.MAX_VALUE;
+        for (Host host : ring) {
+            readyTime = Math.min(readyTime, host.readyTime(now));
+        }
+        return readyTime;
+    }
+
+    /**
+     * Releases the host of the link taken by {@link #poll(long)}
+     * @param link loaded, failed or throttled link
+     */
+    public void finished(CrawlLink link) {
+        host(link.getUrl()).active--;
+    }
+
+    /**
+     * Halves the backoff of the host
+     * @param url of the successfully loaded page
+     */
+    public void succeeded(URL url) {
+        Host host = host(url);
+        host.backoff = host.backoff / 2 < MIN_BACKOFF ? 0 : host.backoff / 2;
+    }
+
+    /**
+     * Doubles the backoff of the throttled host and suspends it
+     * @param url of the throttled page
+     * @param retryAfter time in ms the host asked to wait, -1 if not specified
+     * @return time in ms the host is suspended for
+     */
+    public long backoff(URL url, long retryAfter) {
+        Host host = host(url);
+        host.backoff = Math.min(backoffMax, Math.max(MIN_BACKOFF, host.backoff * 2));
+        long delay = Math.max(host.backoff, Math.min(retryAfter, backoffMax));
+        host.penaltyUntil = Math.max(host.penaltyUntil, System.currentTimeMillis() + delay);
+        host.tokens = 0;
+        return delay;
+    }
+
+    /**
+     * @return number of queued links
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of hosts seen by the crawl
+     */
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * @return number of links dropped as disallowed by robots.txt
+     */
+    public int getDeniedCount() {
+        return deniedCount;
+    }
+
+    private Host host(URL url) {
+        return hosts.computeIfAbsent(RobotsCache.getHostKey(url), key -> new Host(url));
+    }
+
+    private class Host {
+
+        private final URL url;
+        private final ArrayDeque<CrawlLink> queue = new ArrayDeque<>();
+        private boolean queued;
+        private int active;
+        private double tokens;
+        private long refillTime;
+        private long backoff;
+        private long penaltyUntil;
+
+        Host(URL url) {
+            this.url = url;
+            this.tokens = burst;
+            this.refillTime = System.currentTimeMillis();
+        }
+
+        void enqueue(CrawlLink link, boolean first) {
+            if (first) {
+                queue.addFirst(link);
+            } else {
+                queue.add(link);
+            }
+            size++;
+            if (!queued) {
+                queued = true;
+                ring.add(this);
+            }
+        }
+
+        /**
+         * @return next allowed link if the host is ready
+         */
+        CrawlLink poll(long now) {
+            RobotsRules rules = robotsCache.getIfLoaded(url);
+            if (rules == null || rules.isTemporary() || now < penaltyUntil
+                    || concurrency > 0 && active >= concurrency) {
+                return null;
+            }
+            double rate = getRate(rules);
+            if (rate > 0) {
+                refill(now, rate, rules.getCrawlDelay() > 0 ? 1 : burst);
+                if (tokens < 1) {
+                    return null;
+                }
+            }
+            boolean limited = rate > 0;
+            while (!queue.isEmpty()) {
+                CrawlLink link = queue.poll();
+                size--;
+                if (rules.isAllowed(RobotsCache.getPath(link.getUrl()))) {
+                    if (limited) {
+                        tokens--;
+                    }
+                    active++;
+                    return link;
+                }
+                deniedCount++;
+            }
+            return null;
+        }
+
+        long readyTime(long now) {
+            if (concurrency > 0 && active >= concurrency) {
+                return Long.MAX_VALUE;
+            }
+            RobotsRules rules = robotsCache.getIfLoaded(url);
+            if (rules == null) {
+                return now + ROBOTS_WAIT;
+            }
+            if (rules.isTemporary()) {
+                // robots.txt is loaded again by the first poll after the retry time
+                return Math.max(now + ROBOTS_WAIT, rules.getRetryTime());
+            }
+            long readyTime = Math.max(now, penaltyUntil);
+            double rate = getRate(rules);
+            if (rate > 0) {
+                refill(now, rate, rules.getCrawlDelay() > 0 ? 1 : burst);
+                if (tokens < 1) {
+                    readyTime = Math.max(readyTime, now + (long) Math.ceil((1 - tokens) * 1000 / rate));
+                }
+            }
+            return readyTime;
+        }
+
+        /**
+         * @return pages per second allowed by the config and the crawl-delay, 0 for no limit
+         */
+        private double getRate(RobotsRules rules) {
+            if (rules.getCrawlDelay() <= 0) {
+                return rate;
+            }
+            double delayRate = 1000.0 / rules.getCrawlDelay();
+            return rate > 0 ? Math.min(rate, delayRate) : delayRate;
+        }
+
+        private void refill(long now, double rate, int burst) {
+            if (now > refillTime) {
+                tokens += (now - refillTime) * rate / 1000;
+                refillTime = now;
+            }
+            // burst is lowered by crawl-delay of robots.txt loaded after the host was created
+            tokens = Math.min(burst, tokens);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ghost.lucene.index;
+
+import com.ghost.NoobleApplication;
+import com.ghost.lucene.LuceneProperties;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Opens index directories of the I/O strategy specified in lucene.properties. Freshly flushed small segments
+ * may be cached in heap by {@link NRTCachingDirectory}, so near real time reopen does not read them from disk.
+ */
+public final class IndexDirectories {
+
+    // files are read by warm up in blocks of this size
+    private static final int WARM_UP_BLOCK = 64 * 1024;
+
+    private IndexDirectories() {}
+
+    /**
+     * @param path of the shard directory
+     * @param properties index params
+     * @param shardCount number of the shards, NRT cache is split between them
+     * @return new directory to be closed by the caller
+     * @throws IOException
+     */
+    public static Directory open(Path path, LuceneProperties.Index properties, int shardCount) throws IOException {
+        Directory directory;
+        switch (properties.getDirectoryType()) {
+            case MMAP:
+                directory = new MMapDirectory(path);
+                break;
+            case NIO:
+                directory = new NIOFSDirectory(path);
+                break;
+            case PRELOAD:
+                MMapDirectory mmapDirectory = new MMapDirectory(path);
+                mmapDirectory.setPreload(true);
+                directory = mmapDirectory;
+                break;
+            default:
+                directory = FSDirectory.open(path);
+        }
+        // new index has nothing to warm up
+        if (properties.isWarmUp() && Files.isDirectory(path)) {
+            warmUp(directory);
+        }
+        double cacheMb = properties.getNrtCacheMb() / shardCount;
+        if (cacheMb > 0) {
+            directory = new NRTCachingDirectory(directory, properties.getNrtCacheMergeMb(), cacheMb);
+        }
+        return directory;
+    }
+
+    /**
+     * Reads every file of the index once, so the OS page cache holds the index before the first query
+     * and mapped files do not page fault on search after restart
+     * @param directory not yet opened by the index writer
+     * @throws IOException
+     */
+    public static void warmUp(Directory directory) throws IOException {
+        long start = System.currentTimeMillis();
+        long size = 0;
+        byte[] block = new byte[WARM_UP_BLOCK];
+        for (String file : directory.listAll()) {
+            try (IndexInput input = directory.openInput(file, IOContext.READONCE)) {
+                long length = input.length();
+                while (input.getFilePointer() < length) {
+                    int count = (int) Math.min(block.length, length - input.getFilePointer());
+                    input.readBytes(block, 0, count);
+                }
+                size += length;
+            }
+        }
+        NoobleApplication.log.info("Index directory {} warmed up: {} MB in {} ms", directory,
+                size / (1024 * 1024), System.currentTimeMillis() - start);
+    }
+
+    public enum Type {
+        /** Chosen by Lucene for the platform, mmap on 64 bit JVMs */
+        AUTO,
+        /** Files are memory mapped, read by the OS page cache without copying to heap */
+        MMAP,
+        /** Positional reads of file channels, no address space is reserved for the index */
+        NIO,
+        /** Files are memory mapped and loaded into RAM when opened, for small hot indexes */
+        PRELOAD
+    }
+}
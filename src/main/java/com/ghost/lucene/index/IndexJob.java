@@ -0,0 +1,206 @@
+package com.ghost.lucene.index;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import com.ghost.json.View;
+
+import java.net.URL;
+import java.util.concurrent.Future;
+
+/**
+ * Crawl submitted to the job executor of {@link IndexService}. Progress is read from the running {@link Crawler},
+ * final counts are kept when the job ends, so finished jobs do not hold the crawl state.
+ * Status changes are synchronized, the job is cancelled from request threads.
+ */
+public class IndexJob {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final long id;
+    private final URL url;
+    private final int depth;
+    private final long submitTime;
+    private volatile Status status = Status.QUEUED;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile String error;
+    private volatile Crawler crawler;
+    private Future<?> future;
+    private boolean cancelRequested;
+
+    // counts of the finished crawl
+    private int fetchedCount;
+    private int indexedCount;
+    private int errorCount;
+    private int frontierSize;
+    private double pagesPerSecond;
+
+    public IndexJob(long id, URL url, int depth) {
+        this.id = id;
+        this.url = url;
+        this.depth = depth;
+        this.submitTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return false if the job is cancelled while queued and is not to be run
+     */
+    synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * @param crawler running the job, cancelled at once if the job is cancelled
+     */
+    synchronized void setCrawler(Crawler crawler) {
+        this.crawler = crawler;
+        if (cancelRequested) {
+            crawler.cancel();
+        }
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Ends the job, keeps the counts of the crawl
+     * @param error of the crawl, null if the crawl ended normally
+     */
+    synchronized void finish(Exception error) {
+        Crawler crawler = this.crawler;
+        if (crawler != null) {
+            fetchedCount = crawler.getFetchedCount();
+            indexedCount = crawler.getIndexedCount();
+            errorCount = crawler.getErrorCount();
+            frontierSize = crawler.getFrontierSize();
+            pagesPerSecond = crawler.getPagesPerSecond();
+            this.crawler = null;
+        }
+        if (error != null) {
+            this.error = error.getMessage();
+        }
+        status = cancelRequested ? Status.CANCELLED : error != null ? Status.FAILED : Status.DONE;
+        endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Cancels the queued job or stops the running crawl, its crawl log is kept to resume
+     * @return false if the job is already finished
+     */
+    public synchronized boolean cancel() {
+        switch (status) {
+            case QUEUED:
+                status = Status.CANCELLED;
+                endTime = System.currentTimeMillis();
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return true;
+            case RUNNING:
+                cancelRequested = true;
+                if (crawler != null) {
+                    crawler.cancel();
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @JsonView(View.Public.class)
+    public long getId() {
+        return id;
+    }
+
+    @JsonView(View.Public.class)
+    public String getUrl() {
+        return url.toString();
+    }
+
+    URL getSeed() {
+        return url;
+    }
+
+    @JsonView(View.Public.class)
+    public int getDepth() {
+        return depth;
+    }
+
+    @JsonView(View.Public.class)
+    public Status getStatus() {
+        return status;
+    }
+
+    @JsonView(View.Public.class)
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * @return time in ms the job started, 0 if queued
+     */
+    @JsonView(View.Public.class)
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return crawl time in ms, 0 if queued
+     */
+    @JsonView(View.Public.class)
+    public long getElapsedTime() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+
+    /**
+     * @return message of the error the job failed with
+     */
+    @JsonView(View.Public.class)
+    public String getError() {
+        return error;
+    }
+
+    @JsonView(View.Public.class)
+    public synchronized int getFetchedCount() {
+        return crawler == null ? fetchedCount : crawler.getFetchedCount();
+    }
+
+    @JsonView(View.Public.class)
+    public synchronized int getIndexedCount() {
+        return crawler == null ? indexedCount : crawler.getIndexedCount();
+    }
+
+    @JsonView(View.Public.class)
+    public synchronized int getErrorCount() {
+        return crawler == null ? errorCount : crawler.getErrorCount();
+    }
+
+    @JsonView(View.Public.class)
+    public synchronized int getFrontierSize() {
+        return crawler == null ? frontierSize : crawler.getFrontierSize();
+    }
+
+    @JsonView(View.Public.class)
+    public synchronized double getPagesPerSecond() {
+        return crawler == null ? pagesPerSecond : crawler.getPagesPerSecond();
+    }
+
+    @Override
+    public String toString() {
+        return "Index job " + id + " " + status + " " + url;
+    }
+}
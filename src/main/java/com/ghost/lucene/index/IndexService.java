@@ -3,17 +3,29 @@ package com.ghost.lucene.index;
 import com.ghost.NoobleApplication;
 import com.ghost.lucene.LuceneUtility;
 import com.ghost.lucene.LuceneProperties;
+import com.ghost.source.FetchResponse;
+import com.ghost.source.PageFetcher;
+import com.ghost.source.URLNormalizer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Uses Indexer to index URL source
+ * Uses Indexer to index URL source. Crawls are run as {@link IndexJob}s by a bounded job executor,
+ * lucene.index.job-threads crawls run at once and lucene.index.job-queue jobs wait for a thread.
  */
 @Service
 public class IndexService {
@@ -23,80 +35,230 @@ public class IndexService {
 
     @Autowired
     private Indexer indexer;
-    private int numberOfThreads;
     private int indexDepth;
     private int maxIndexDepth;
-    private ExecutorService executorService;
-    private int indexCount = 0;
-    private long indexTime = 0;
-
+    private ThreadPoolExecutor jobExecutor;
+    private PageFetcher pageFetcher;
+    private RobotsCache robotsCache;
+    private final Map<Long, IndexJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
 
     @PostConstruct
-    private void initService() {
-        numberOfThreads = luceneProperties.getIndex().getThreads();
+    void initService() {
         indexDepth = luceneProperties.getIndex().getDepth();
         maxIndexDepth = luceneProperties.getIndex().getDepthMax();
+        pageFetcher = PageFetcher.create(luceneProperties.getIndex());
+        robotsCache = new RobotsCache(pageFetcher, luceneProperties.getIndex().getUserAgent(),
+                TimeUnit.SECONDS.toMillis(luceneProperties.getIndex().getRobotsExpire()),
+                luceneProperties.getIndex().isRobots());
+        int jobThreads = Math.max(1, luceneProperties.getIndex().getJobThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        jobExecutor = new ThreadPoolExecutor(jobThreads, jobThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, luceneProperties.getIndex().getJobQueue())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "index-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Cancels the jobs and waits for the running crawls to stop, their crawl logs are kept to resume.
+     * Crawls are not interrupted, interrupt of Lucene file channels closes the index writer.
+     */
+    @PreDestroy
+    void closeService() throws IOException {
+        jobs.values().forEach(IndexJob::cancel);
+        jobExecutor.shutdown();
+        try {
+            jobExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        robotsCache.close();
+        pageFetcher.close();
     }
 
     public IndexService() {}
 
     /**
-     * Call this method to start multithreading recursive index page from specified URL.
-     * Be careful, for indexDepth values > 2 time indexing will greatly increase
-     * @param sourceLink for index
+     * Creates service outside of Spring context, call {@link #initService()} before use
+     * @param luceneProperties index params
+     * @param indexer to index pages with
+     */
+    IndexService(LuceneProperties luceneProperties, Indexer indexer) {
+        this.luceneProperties = luceneProperties;
+        this.indexer = indexer;
+    }
+
+    /**
+     * @return directory of crawl logs, next to the index directory
+     */
+    private Path getCrawlLogDirectory() {
+        return Paths.get(indexer.getIndexPath()).toAbsolutePath().resolveSibling("crawl");
+    }
+
+    /**
+     * @param url seed of the crawl
+     * @return true if a crawl from the url was interrupted and is resumed by the next index request
+     */
+    public boolean hasUnfinishedCrawl(URL url) {
+        return luceneProperties.getIndex().isResumable()
+                && CrawlLog.exists(getCrawlLogDirectory(), URLNormalizer.normalizeOrSelf(url));
+    }
+
+    /**
+     * @param url seed of the crawl
+     * @return true if the page is in the index and its crawl is finished
      * @throws IOException
-    */
-    public void index(URL sourceLink) throws InvalidPathException, IOException {
+     */
+    public boolean isIndexed(URL url) throws IOException {
+        return indexer.isIndexed(URLNormalizer.normalizeOrSelf(url).toString()) && !hasUnfinishedCrawl(url);
+    }
 
-        long startTime = System.currentTimeMillis();
-        init();
+    /**
+     * Checks the page exists by HEAD request on the job thread, connection is kept alive for the crawl
+     * @param url of the page
+     * @throws IOException if the page does not respond with 200
+     */
+    private void checkReachable(URL url) throws IOException, InterruptedException {
+        FetchResponse response;
         try {
-            Future<Integer> future = executorService.submit(new IndexTask(sourceLink, indexer, indexDepth, numberOfThreads));
-            indexCount = future.get();
-            if (future.isDone()) {
-                NoobleApplication.log.info("Indexed: {}", indexCount);
-            }
-        } catch (StackOverflowError e) {
-            NoobleApplication.log.error("Stack overflow!", e);
-            e.printStackTrace();
-        } catch (InterruptedException e) {
-            NoobleApplication.log.error("Interrupted thread: " + Thread.currentThread().getName(), e);
+            response = pageFetcher.head(url).get();
         } catch (ExecutionException e) {
-            NoobleApplication.log.error("Exception in thread: " + Thread.currentThread().getName(), e);
+            throw new IOException("Resource unreachable: " + url, e.getCause());
+        }
+        if (response.getStatus() != 200) {
+            throw new IOException("Resource unreachable: " + url + ", status " + response.getStatus());
+        }
+    }
+
+    /**
+     * Runs breadth-first crawl from specified URL on the calling thread. Pages are indexed by
+     * one pipeline of lucene.index.threads fetch workers, whatever the index depth is.
+     * Index is committed when the crawl ends. If lucene.index.resumable is on, the interrupted crawl
+     * of the same URL is resumed with its depth. The crawl fails at once if the source is unreachable.
+     * @param sourceLink for index
+     * @param depth max link depth from the source
+     * @param job to report progress to
+     * @return number of indexed pages
+     */
+    private int crawl(URL sourceLink, int depth, IndexJob job) throws IOException, InterruptedException {
+        checkReachable(sourceLink);
+        CrawlLog crawlLog = luceneProperties.getIndex().isResumable()
+                ? CrawlLog.open(getCrawlLogDirectory(), URLNormalizer.normalizeOrSelf(sourceLink)) : null;
+        Crawler crawler = new Crawler(sourceLink, depth, indexer, pageFetcher, robotsCache, crawlLog,
+                luceneProperties.getIndex());
+        job.setCrawler(crawler);
+        boolean bulkLoad = luceneProperties.getIndex().isBulkLoad();
+        if (bulkLoad) {
+            indexer.startBulkLoad();
+        }
+        try {
+            return crawler.call();
+        } finally {
+            if (bulkLoad) {
+                indexer.finishBulkLoad();
+            } else if (crawlLog == null) {
+                // resumable crawl commits itself
+                indexer.commit();
+            }
         }
-        stop();
-        indexTime = System.currentTimeMillis() - startTime;
-        NoobleApplication.log.info("Index time: " + getIndexTime());
     }
 
     /**
-     * Executor initialization
+     * Queues the crawl from specified URL to the job executor and returns at once.
+     * If the crawl of the same URL is queued or running, its job is returned.
+     * @param sourceLink for index
+     * @param depth max link depth from the source, not negative, limited by lucene.index.depth-max
+     * @return job to watch the crawl progress
+     * @throws IllegalArgumentException if the depth is negative
+     * @throws RejectedExecutionException if the job queue is full
      */
-    public void init() {
-        executorService = Executors.newSingleThreadExecutor();
+    public synchronized IndexJob submit(URL sourceLink, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Negative index depth: " + depth);
+        }
+        URL seed = URLNormalizer.normalizeOrSelf(sourceLink);
+        for (IndexJob job : jobs.values()) {
+            if (!job.getStatus().isFinished() && job.getUrl().equals(seed.toString())) {
+                return job;
+            }
+        }
+        IndexJob job = new IndexJob(jobIds.incrementAndGet(), seed, Math.min(depth, maxIndexDepth));
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(jobExecutor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        NoobleApplication.log.info("{} queued", job);
+        removeFinishedJobs();
+        return job;
+    }
+
+    private void run(IndexJob job) {
+        if (!job.start()) {
+            return;
+        }
+        NoobleApplication.log.info("{} started", job);
+        Exception error = null;
+        try {
+            crawl(job.getSeed(), job.getDepth(), job);
+        } catch (IOException | RuntimeException e) {
+            error = e;
+            NoobleApplication.log.error("Error indexing " + job.getUrl(), e);
+        } catch (InterruptedException e) {
+            error = e;
+            Thread.currentThread().interrupt();
+        }
+        job.finish(error);
+        NoobleApplication.log.info("{}: indexed {} in {}", job, job.getIndexedCount(),
+                LuceneUtility.formatTime(job.getElapsedTime()));
     }
 
     /**
-     * Call this method before shutdown an application
-    */
-    public void stop() {
-        executorService.shutdown();
+     * Keeps at most lucene.index.job-history finished jobs, the oldest are removed first
+     */
+    private void removeFinishedJobs() {
+        long finished = jobs.values().stream().filter(job -> job.getStatus().isFinished()).count();
+        Iterator<IndexJob> iterator = jobs.values().iterator();
+        while (finished > luceneProperties.getIndex().getJobHistory() && iterator.hasNext()) {
+            if (iterator.next().getStatus().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
     }
 
     /**
-     *  Method waits while all tasks have finished
-    */
-    public void awaitTermination() throws InterruptedException {
-        executorService.shutdown();
-        executorService.awaitTermination(1, TimeUnit.MINUTES);
+     * @param id of the job
+     * @return the job or null if there is no such job
+     */
+    public IndexJob getJob(long id) {
+        return jobs.get(id);
     }
 
-    public String getIndexTime() {
-        return LuceneUtility.formatTime(indexTime);
+    /**
+     * @return queued, running and recently finished jobs in order of submitting
+     */
+    public List<IndexJob> getJobs() {
+        return new ArrayList<>(jobs.values());
     }
 
-    public int getIndexCount() {
-        return indexCount;
+    /**
+     * Cancels the queued or running job
+     * @param id of the job
+     * @return the job or null if there is no such job
+     */
+    public IndexJob cancel(long id) {
+        IndexJob job = jobs.get(id);
+        if (job != null && job.cancel()) {
+            jobExecutor.purge();
+            NoobleApplication.log.info("{} cancelled", job);
+        }
+        return job;
     }
 
     public void setIndexDepth(int indexDepth) {
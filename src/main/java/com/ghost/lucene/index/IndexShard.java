@@ -0,0 +1,113 @@
+package com.ghost.lucene.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * One shard of the index: own directory, index writer, merge policy and merge scheduler, so shards flush
+ * and merge independently. Sources are routed to the shards by hash of their path, see {@link Indexer#getShard(String)}.
+ */
+public class IndexShard implements Closeable {
+
+    private final int number;
+    private final Directory directory;
+    private final IndexWriter indexWriter;
+    private final DeferredMergePolicy mergePolicy;
+    /** Near real time searcher of the writer, shared by the indexer and the search, opened on first use */
+    private volatile SearcherManager searcherManager;
+    /** Factory of new searchers of the shard, null for plain searchers */
+    private volatile SearcherFactory searcherFactory;
+
+    /**
+     * Opens the writer of the shard, locks the shard directory
+     * @param number of the shard
+     * @param directory of the shard
+     * @param config of the writer, not shared with other shards
+     * @param mergePolicy merge policy of the config
+     * @throws IOException
+     */
+    IndexShard(int number, Directory directory, IndexWriterConfig config, DeferredMergePolicy mergePolicy)
+            throws IOException {
+        this.number = number;
+        this.directory = directory;
+        this.mergePolicy = mergePolicy;
+        this.indexWriter = new IndexWriter(directory, config);
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
+    DeferredMergePolicy getMergePolicy() {
+        return mergePolicy;
+    }
+
+    /**
+     * Opens near real time searcher manager of the writer on first use. Indexer looks up indexed sources
+     * and search runs queries on the same searchers, see {@link #setSearcherFactory(SearcherFactory)}.
+     * @return searcher manager of the shard
+     * @throws IOException
+     */
+    public SearcherManager getSearcherManager() throws IOException {
+        SearcherManager manager = searcherManager;
+        if (manager == null) {
+            synchronized (this) {
+                manager = searcherManager;
+                if (manager == null) {
+                    manager = new SearcherManager(indexWriter, true, new SearcherFactory() {
+                        @Override
+                        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader)
+                                throws IOException {
+                            SearcherFactory factory = searcherFactory;
+                            return factory == null
+                                    ? super.newSearcher(reader, previousReader)
+                                    : factory.newSearcher(reader, previousReader);
+                        }
+                    });
+                    searcherManager = manager;
+                }
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * Sets the factory of searchers opened by the next refreshes of the shard searcher manager
+     * @param searcherFactory factory of searchers, null for plain searchers
+     */
+    public void setSearcherFactory(SearcherFactory searcherFactory) {
+        this.searcherFactory = searcherFactory;
+    }
+
+    /**
+     * Closes the searcher manager and the writer, changes are committed
+     */
+    @Override
+    public void close() throws IOException {
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
+        indexWriter.close();
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + number + " " + directory;
+    }
+}
@@ -1,84 +1,116 @@
 package com.ghost.lucene.index;
 
 import com.ghost.NoobleApplication;
+import com.ghost.metrics.LatencyMetrics;
 import com.ghost.source.AbstractPage;
+import com.ghost.source.FetchResponse;
 import com.ghost.source.JsoupPage;
+import com.ghost.source.PageFetcher;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
-public class IndexTask implements Callable<Integer> {
+/**
+ * Indexes a single frontier link in three steps run by the stages of {@link CrawlPipeline}: fetch, parse and index.
+ * Does not follow found links itself, they are returned to the {@link Crawler} to be scheduled.
+ * Every step releases the data of the previous one.
+ * Already indexed page is loaded by conditional request with validators of the indexed version. Not modified page
+ * is neither parsed nor indexed, its validators and crawl time are updated and its links, if they are followed,
+ * are read from the index.
+ */
+public class IndexTask {
 
     // patterns form unique link names, based on URL
     private static final String URL_FILENAME_PATTERN = "[^a-zA-Z0-9-_\\.]";
     private static final String FILENAME_PARTS_SEPARATOR = "_";
 
-    private int numberOfThreads;
     private Indexer indexer;
-    private URL link;
-    private int depth;
+    private PageFetcher fetcher;
+    private CrawlLink link;
+    private SourceMetadata indexed;
+    private FetchResponse response;
+    private AbstractPage page;
+    private Collection<String> links;
+    private String etag;
+    private String lastModified;
 
-    public IndexTask(URL link, Indexer indexer, int depth, int numberOfThreads) {
+    public IndexTask(CrawlLink link, Indexer indexer, PageFetcher fetcher) {
         this.link = link;
         this.indexer = indexer;
-        this.depth = depth;
-        this.numberOfThreads = numberOfThreads;
+        this.fetcher = fetcher;
+    }
+
+    public CrawlLink getLink() {
+        return link;
     }
 
     /**
-     * Called by ExecutorService
-     * @return number of indexed pages
-     * @throws Exception
+     * Loads the page, network bound
+     * @throws IOException if the page could not be loaded
      */
-    @Override
-    public Integer call() throws Exception {
-        AbstractPage page = new JsoupPage(link);
-        indexer.indexSource(page.getText(), buildFileName(link), link.toString(),page.getTitle());
-        return depth > 0 ? index(page) : 1;
+    public void fetch() throws IOException {
+        indexed = indexer.getMetadata(link.getUrl().toString());
+        response = fetcher.load(link.getUrl(),
+                indexed == null ? Collections.emptyMap() : indexed.getConditionalHeaders());
     }
 
     /**
-     * Runs multithreading recursive page indexing process using newFixedThreadPool Executor.
-     * @param page to index
-     * @return number of indexed pages
-     * @throws IOException
+     * Parses the loaded page, CPU bound
+     * @return links found on the page to be indexed next, empty if max depth is reached
+     * @throws IOException if the page is not html
      */
-    private int index(AbstractPage page) throws IOException, InterruptedException {
-        depth--;
-        Collection<URL> links = page.getLinks();
-        NoobleApplication.log.info("[depth: {}] Indexing source: {}", depth, page.getUrl().toString());
-        NoobleApplication.log.info("Link count     : {}", links.size());
-        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
-        Collection<Callable<Integer>> tasks = new HashSet<>();
-        links
-                .stream()
-                .forEach(link -> tasks.add(new IndexTask(link, indexer, depth, numberOfThreads)));
-
-        final int[] errors = {0};
-        int indexed = executorService.invokeAll(tasks)
-                .stream()
-                .mapToInt(future -> {
-                    Integer indexedCount = 0;
-                    try {
-                        indexedCount = future.get();
-                    } catch (Exception e) {
-                        errors[0]++;
-                    }
-                    return indexedCount == null ? 0: indexedCount;
-                })
-                .sum();
+    public Collection<CrawlLink> parse() throws IOException {
+        etag = response.getETag();
+        lastModified = response.getLastModified();
+        if (response.isNotModified()) {
+            NoobleApplication.log.debug("{} not modified", link);
+            links = link.isExpandable() ? indexer.getLinks(link.getUrl().toString()) : Collections.emptyList();
+        } else {
+            long startTime = System.nanoTime();
+            page = new JsoupPage(link.getUrl(), response);
+            links = page.getLinks()
+                    .stream()
+                    .map(URL::toString)
+                    .collect(Collectors.toList());
+            LatencyMetrics.CRAWL_PARSE.recordSince(startTime);
+        }
+        response = null;
+        if (!link.isExpandable()) {
+            return Collections.emptyList();
+        }
+        NoobleApplication.log.info("{} Link count: {}", link, links.size());
+        List<CrawlLink> children = new ArrayList<>(links.size());
+        for (String child : links) {
+            try {
+                children.add(link.child(new URL(child)));
+            } catch (MalformedURLException e) {
+                NoobleApplication.log.warn("Skipped malformed link {}", child);
+            }
+        }
+        return children;
+    }
 
-        executorService.shutdown();
-        NoobleApplication.log.info("[Depth: {}] Source: {}", depth, page.getUrl().toString());
-        NoobleApplication.log.info("Links  : {}", links.size());
-        NoobleApplication.log.info("Errors : {}", errors[0]);
-        NoobleApplication.log.info("Indexed: {}", indexed);
-        return indexed;
+    /**
+     * Adds the parsed page to the index, CPU and disk bound
+     * @throws IOException if the page could not be indexed
+     */
+    public void index() throws IOException {
+        URL url = link.getUrl();
+        if (page != null) {
+            indexer.indexSource(page.getText(), buildFileName(url), url.toString(), page.getTitle(), links, etag,
+                    lastModified);
+        } else if (indexed != null) {
+            indexer.updateNotModified(url.toString(), indexed, etag, lastModified);
+        }
+        indexed = null;
+        page = null;
+        links = null;
     }
 
     /**
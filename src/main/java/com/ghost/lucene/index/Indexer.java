@@ -3,15 +3,18 @@ package com.ghost.lucene.index;
 import com.ghost.NoobleApplication;
 import com.ghost.lucene.LuceneConstants;
 import com.ghost.lucene.LuceneProperties;
+import com.ghost.metrics.LatencyMetrics;
 import com.ghost.utility.OSValidator;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.*;
-import org.apache.lucene.index.IndexOptions;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -20,9 +23,27 @@ import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *  Indexes row data files
@@ -33,13 +54,50 @@ public class Indexer {
     @Autowired
     private LuceneProperties luceneProperties;
 
-    private IndexWriter indexWriter;
+    private static final String HASH_ALGORITHM = "MD5";
+    private static final byte NO_TERM_VECTORS_MARK = 1;
+    private static final Set<String> METADATA_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            LuceneConstants.SOURCE_HASH, LuceneConstants.SOURCE_ETAG, LuceneConstants.SOURCE_LAST_MODIFIED,
+            LuceneConstants.SOURCE_CRAWL_TIME)));
+    // shard directories of sharded index: shard-N-of-COUNT
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SHARD_COUNT_SEPARATOR = "-of-";
+
+    private final List<IndexShard> shards = new ArrayList<>();
     private Analyzer analyzer;
+    private ScheduledExecutorService commitExecutor;
+
+    /** Number of sources indexed since the last commit */
+    private final AtomicInteger uncommittedCount = new AtomicInteger();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+    private volatile long commitTime;
+
+    private final List<CommitListener> commitListeners = new CopyOnWriteArrayList<>();
 
     public Indexer() {}
 
-    public IndexWriter getIndexWriter() {
-        return indexWriter;
+    /**
+     * Creates indexer outside of Spring context, call {@link #init()} before use
+     * @param luceneProperties index params
+     */
+    public Indexer(LuceneProperties luceneProperties) {
+        this.luceneProperties = luceneProperties;
+    }
+
+    /**
+     * @return shards of the index, lucene.index.shards
+     */
+    public List<IndexShard> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * Routes the source to its shard by hash of the path, so every version of the source is in the same shard
+     * @param path source path (url etc)
+     * @return shard of the source
+     */
+    public IndexShard getShard(String path) {
+        return shards.get(Math.floorMod(path.hashCode(), shards.size()));
     }
 
     public void setAnalyzer(Analyzer analyzer) {
@@ -62,91 +120,533 @@ public class Indexer {
     }
 
     /**
-     * Creates if not and registers file system directory for indexing
-     * @return FSDirectory object mapped to specified path
+     * Creates if not and registers file system directory for indexing. Single shard index is in the index
+     * directory, every shard of sharded index is in its sub directory named by the shard number and count,
+     * so index of other shard count is not mixed with the current one.
+     * @param shard number of the shard
+     * @param shardCount number of the shards
+     * @return directory of lucene.index.directory-type mapped to specified path, see {@link IndexDirectories}
      * @throws IOException
      */
-    public Directory getIndexDirectory() throws IOException {
+    public Directory getIndexDirectory(int shard, int shardCount) throws IOException {
+        Path indexPath = getIndexRoot();
+        if (shardCount > 1) {
+            indexPath = indexPath.resolve(SHARD_PREFIX + shard + SHARD_COUNT_SEPARATOR + shardCount);
+        }
+        NoobleApplication.log.info("Index path: {}", indexPath);
+        return IndexDirectories.open(indexPath, luceneProperties.getIndex(), shardCount);
+    }
+
+    private Path getIndexRoot() {
         String path = getIndexPath();
-        Path indexPath;
         try {
-            indexPath = Paths.get(path);
+            return Paths.get(path);
         } catch (InvalidPathException e) {
             NoobleApplication.log.error("Invalid index path: {}", path);
             throw new RuntimeException(e);
         }
-        NoobleApplication.log.info("Index path: {}", indexPath);
-        return FSDirectory.open(indexPath);
     }
 
     /**
-     * Creates new IndexWriter instance. Locks the index directory, so one cant provide parallel search
+     * Sources are routed by the shard count, so an index of other shard count can not be opened:
+     * its sources would be searched in wrong shards and the shards would look empty.
+     * @param shardCount number of the shards of lucene.index.shards
+     * @throws IllegalStateException if the index directory holds an index of other shard count
+     * @throws IOException
+     */
+    private void checkShardLayout(int shardCount) throws IOException {
+        Path indexRoot = getIndexRoot();
+        if (!Files.isDirectory(indexRoot)) {
+            return;
+        }
+        Set<Integer> shardCounts = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexRoot)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(IndexFileNames.SEGMENTS + "_")) {
+                    shardCounts.add(1);
+                } else if (name.startsWith(SHARD_PREFIX) && name.contains(SHARD_COUNT_SEPARATOR)) {
+                    try {
+                        shardCounts.add(Integer.parseInt(
+                                name.substring(name.indexOf(SHARD_COUNT_SEPARATOR) + SHARD_COUNT_SEPARATOR.length())));
+                    } catch (NumberFormatException e) {
+                        NoobleApplication.log.warn("Unknown directory in the index directory: {}", file);
+                    }
+                }
+            }
+        }
+        shardCounts.remove(shardCount);
+        if (!shardCounts.isEmpty()) {
+            throw new IllegalStateException("Index " + indexRoot + " has " + shardCounts + " shards, but "
+                    + "lucene.index.shards=" + shardCount + ". Set the shard count of the index or move the index "
+                    + "away to build a new one");
+        }
+    }
+
+    /**
+     * Creates IndexWriter instance of every shard. Locks the shard directories, so one cant provide parallel search
      */
     @PostConstruct
     public void init() throws IOException {
-        Directory indexDirectory;
-        try {
-            indexDirectory = getIndexDirectory();
-        } catch (IOException e) {
-            NoobleApplication.log.error("Error initializing index directory: {}", e);
-            throw new RuntimeException(e);
-        }
         analyzer = new StandardAnalyzer();
+        int shardCount = Math.max(1, luceneProperties.getIndex().getShards());
+        checkShardLayout(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            Directory indexDirectory;
+            try {
+                indexDirectory = getIndexDirectory(shard, shardCount);
+            } catch (IOException e) {
+                NoobleApplication.log.error("Error initializing index directory: {}", e);
+                throw new RuntimeException(e);
+            }
+            DeferredMergePolicy mergePolicy = getMergePolicy();
+            shards.add(new IndexShard(shard, indexDirectory, getIndexWriterConfig(mergePolicy, shardCount),
+                    mergePolicy));
+        }
+        commitTime = System.currentTimeMillis();
+        commitExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long commitInterval = luceneProperties.getIndex().getCommitInterval();
+        if (commitInterval > 0) {
+            commitExecutor.scheduleWithFixedDelay(this::commitChanges, commitInterval, commitInterval,
+                    TimeUnit.SECONDS);
+        }
+        NoobleApplication.log.info("Indexed sources: {} in {} shards",
+                shards.stream().mapToInt(shard -> shard.getIndexWriter().numDocs()).sum(), shards.size());
+    }
+
+    /**
+     * @return tiered merge policy of lucene.properties wrapped to defer merges during bulk loads
+     */
+    private DeferredMergePolicy getMergePolicy() {
+        LuceneProperties.Index properties = luceneProperties.getIndex();
+        TieredMergePolicy tieredMergePolicy = new TieredMergePolicy();
+        tieredMergePolicy.setSegmentsPerTier(properties.getMergeSegmentsPerTier());
+        tieredMergePolicy.setMaxMergeAtOnce(
+                Math.min(tieredMergePolicy.getMaxMergeAtOnce(), (int) properties.getMergeSegmentsPerTier()));
+        tieredMergePolicy.setMaxMergedSegmentMB(properties.getMaxMergedSegmentMb());
+        return new DeferredMergePolicy(tieredMergePolicy);
+    }
+
+    /**
+     * Ingestion settings of lucene.properties: RAM buffer and max buffered documents trigger segment flushes,
+     * merge scheduler threads. RAM buffer is split between the shards.
+     * @param mergePolicy of the shard
+     * @param shardCount number of the shards
+     * @return config of the shard index writer
+     */
+    private IndexWriterConfig getIndexWriterConfig(DeferredMergePolicy mergePolicy, int shardCount) {
+        LuceneProperties.Index properties = luceneProperties.getIndex();
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
         config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-        indexWriter = new IndexWriter(indexDirectory, config);
+        config.setRAMBufferSizeMB(properties.getRamBufferMb() / shardCount);
+        config.setMaxBufferedDocs(properties.getMaxBufferedDocs());
+        config.setMergePolicy(mergePolicy);
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        int mergeThreads = properties.getMergeThreads();
+        if (mergeThreads > 0) {
+            // a few merges may wait for a thread before indexing is stalled
+            mergeScheduler.setMaxMergesAndThreads(mergeThreads + 5, mergeThreads);
+        }
+        config.setMergeScheduler(mergeScheduler);
+        config.setCommitOnClose(true);
+        return config;
+    }
+
+    /**
+     * Makes all the indexed sources durable, shards are committed one by one. Thread safe, concurrent commits
+     * run one by one. Commit listeners are notified before and after the commit of all the shards.
+     * @throws IOException
+     */
+    public synchronized void commit() throws IOException {
+        long startTime = System.currentTimeMillis();
+        int count = uncommittedCount.getAndSet(0);
+        for (CommitListener listener : commitListeners) {
+            listener.beforeCommit();
+        }
+        for (IndexShard shard : shards) {
+            shard.getIndexWriter().commit();
+        }
+        commitTime = System.currentTimeMillis();
+        for (IndexShard shard : shards) {
+            shard.getSearcherManager().maybeRefresh();
+        }
+        for (CommitListener listener : commitListeners) {
+            try {
+                listener.afterCommit();
+            } catch (IOException e) {
+                NoobleApplication.log.error("Error notifying commit listener: {}", e.getMessage());
+            }
+        }
+        NoobleApplication.log.info("Index committed: {} sources in {} ms", count, commitTime - startTime);
+    }
+
+    public void addCommitListener(CommitListener listener) {
+        commitListeners.add(listener);
+    }
+
+    public void removeCommitListener(CommitListener listener) {
+        commitListeners.remove(listener);
+    }
+
+    /**
+     * Commits in background if there are uncommitted changes, at most one commit is waiting at a time
+     */
+    private void scheduleCommit() {
+        if (commitScheduled.compareAndSet(false, true)) {
+            commitExecutor.execute(() -> {
+                commitScheduled.set(false);
+                commitChanges();
+            });
+        }
+    }
+
+    private void commitChanges() {
+        if (shards.stream().noneMatch(shard -> shard.getIndexWriter().hasUncommittedChanges())) {
+            return;
+        }
+        try {
+            commit();
+        } catch (IOException | RuntimeException e) {
+            NoobleApplication.log.error("Error committing index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts bulk load: merges are deferred till the end of all the started bulk loads
+     */
+    public void startBulkLoad() {
+        shards.forEach(shard -> shard.getMergePolicy().startBulkLoad());
+        NoobleApplication.log.info("Bulk load started, merges are deferred");
+    }
+
+    /**
+     * Finishes bulk load started by {@link #startBulkLoad()}. After the last bulk load the deferred merges are
+     * started in background and the index is committed.
+     * @throws IOException
+     */
+    public void finishBulkLoad() throws IOException {
+        boolean finished = false;
+        for (IndexShard shard : shards) {
+            finished = shard.getMergePolicy().finishBulkLoad();
+        }
+        if (finished) {
+            NoobleApplication.log.info("Bulk load finished, merging deferred segments");
+            for (IndexShard shard : shards) {
+                shard.getIndexWriter().maybeMerge();
+            }
+            commit();
+        }
     }
 
     @PreDestroy
     public void close() throws IOException{
-        indexWriter.close();
+        // running commit is not interrupted, interrupt of Lucene file channels closes the index writer
+        commitExecutor.shutdown();
+        try {
+            commitExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (IndexShard shard : shards) {
+            shard.close();
+        }
     }
 
     /**
-     * Forms field type for contents. Added IndexOptions and term vectors for retrieving and highlighting content fragments.
+     * Forms field type for contents. Added IndexOptions for retrieving and highlighting content fragments.
+     * Offsets in postings are enough for postings highlighter, term vectors are stored
+     * only if lucene.index.term-vectors is on.
      * @return Field type for contents field
      */
     private FieldType getContentsFieldType() {
+        return getContentsFieldType(luceneProperties.getIndex().isTermVectors());
+    }
+
+    /**
+     * Forms field type for contents
+     * @param termVectors store term vectors with offsets or not
+     * @return Field type for contents field
+     */
+    public static FieldType getContentsFieldType(boolean termVectors) {
         FieldType fieldType = new FieldType();
         fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
         fieldType.setStored(true);
-        fieldType.setStoreTermVectors(true);
+        fieldType.setStoreTermVectors(termVectors);
         fieldType.setTokenized(true);
-        fieldType.setStoreTermVectorOffsets(true);
+        fieldType.setStoreTermVectorOffsets(termVectors);
         return fieldType;
     }
 
     /**
-     * Builds the Lucene Document from a raw contents by adding contents, name, link and title fields.
+     * Builds the Lucene Document from a raw contents by adding contents, name, link, title, hash
+     * and fetch metadata fields.
      * @param contents of raw data (plain text) - stored, indexed, tokenized, term vector
      * @param name Document name - stored, indexed
      * @param path Document path - stored, indexed
      * @param title Document title - stored, indexed
+     * @param links Document links - stored
+     * @param metadata hash of title, contents and links - stored, indexed; validators and crawl time - doc values,
+     *                 updated without indexing the document again
      * @return ready to analyze Document
      */
-    private Document getDocument(String contents, String name, String path, String title) {
+    private Document getDocument(String contents, String name, String path, String title, Collection<String> links,
+                                 SourceMetadata metadata) {
         Document document = new Document();
         document.add(new Field(LuceneConstants.CONTENTS, contents, getContentsFieldType()));
         document.add(new StringField(LuceneConstants.SOURCE_TITLE, title, Field.Store.YES));
         document.add(new StringField(LuceneConstants.SOURCE_NAME, name, Field.Store.YES));
         document.add(new StringField(LuceneConstants.SOURCE_PATH, path, Field.Store.YES));
+        document.add(new StringField(LuceneConstants.SOURCE_HASH, metadata.getHash(), Field.Store.YES));
+        for (Field field : getFetchFields(metadata)) {
+            document.add(field);
+        }
+        for (String link : links) {
+            document.add(new StoredField(LuceneConstants.SOURCE_LINKS, link));
+        }
         return document;
     }
 
     /**
-     * Indexes plain text source with given params
-     * Uses document update method, first deleting docs with searched terms
+     * Indexes plain text source with given params.
+     * Replaces the document with the same path if it exists. If the content of the source
+     * is not changed since last indexing, the source is skipped without analyzing.
      * @param contents plain text of the source to be indexed
      * @param name of the source
      * @param path source path (url etc)
      * @param title source title
+     * @return false if the source is not changed and was skipped
      * @throws IOException
      */
-    public void indexSource(String contents, String name, String path, String title) throws IOException{
-        Document document = getDocument(contents, name, path, title);
-        // TODO: avoid document duplicating while indexing or searching?
-//        indexWriter.updateDocument(new Term(name), document);
-        indexWriter.addDocument(document);
+    public boolean indexSource(String contents, String name, String path, String title) throws IOException{
+        return indexSource(contents, name, path, title, Collections.emptyList(), null, null);
+    }
+
+    /**
+     * Indexes loaded page with its links and HTTP validators, see {@link #indexSource(String, String, String, String)}.
+     * Validators and crawl time of the unchanged page are updated in its document without indexing it again.
+     * @param contents plain text of the source to be indexed
+     * @param name of the source
+     * @param path source path (url etc)
+     * @param title source title
+     * @param links found in the source, followed when the source is not modified, see {@link #getLinks(String)}
+     * @param etag ETag response header, may be null
+     * @param lastModified Last-Modified response header, may be null
+     * @return false if the source is not changed and was skipped
+     * @throws IOException
+     */
+    public boolean indexSource(String contents, String name, String path, String title, Collection<String> links,
+                               String etag, String lastModified) throws IOException {
+        long startTime = System.nanoTime();
+        String hash = hash(title, contents, links, luceneProperties.getIndex().isTermVectors());
+        SourceMetadata metadata = new SourceMetadata(hash, etag, lastModified, System.currentTimeMillis());
+        SourceMetadata indexed = getMetadata(path);
+        if (indexed != null && hash.equals(indexed.getHash()) && updateFetchMetadata(path, metadata)) {
+            NoobleApplication.log.debug("Source not changed: {}", path);
+            return false;
+        }
+        Document document = getDocument(contents, name, path, title, links, metadata);
+        LatencyMetrics.CRAWL_ANALYZE.recordSince(startTime);
+        startTime = System.nanoTime();
+        getShard(path).getIndexWriter().updateDocument(new Term(LuceneConstants.SOURCE_PATH, path), document);
+        LatencyMetrics.CRAWL_ADD_DOCUMENT.recordSince(startTime);
+        int commitDocs = luceneProperties.getIndex().getCommitDocs();
+        if (uncommittedCount.incrementAndGet() >= commitDocs && commitDocs > 0) {
+            scheduleCommit();
+        }
+        return true;
+    }
+
+    /**
+     * Updates validators and crawl time of the source not modified since it was indexed, the document is kept.
+     * Validators missing in the not modified response are kept from the indexed version.
+     * @param path source path (url etc)
+     * @param indexed metadata of the indexed version, see {@link #getMetadata(String)}
+     * @param etag ETag response header, may be null
+     * @param lastModified Last-Modified response header, may be null
+     * @return false if the index has no fetch metadata doc values yet, the metadata is not updated
+     * @throws IOException
+     */
+    public boolean updateNotModified(String path, SourceMetadata indexed, String etag, String lastModified)
+            throws IOException {
+        SourceMetadata metadata = new SourceMetadata(indexed.getHash(), etag == null ? indexed.getETag() : etag,
+                lastModified == null ? indexed.getLastModified() : lastModified, System.currentTimeMillis());
+        return updateFetchMetadata(path, metadata);
+    }
+
+    /**
+     * Fetch metadata fields of the document: validators are binary doc values, empty if missing,
+     * crawl time is numeric doc value
+     */
+    private static Field[] getFetchFields(SourceMetadata metadata) {
+        return new Field[] {
+                new BinaryDocValuesField(LuceneConstants.SOURCE_ETAG, toBytes(metadata.getETag())),
+                new BinaryDocValuesField(LuceneConstants.SOURCE_LAST_MODIFIED, toBytes(metadata.getLastModified())),
+                new NumericDocValuesField(LuceneConstants.SOURCE_CRAWL_TIME, metadata.getCrawlTime())
+        };
+    }
+
+    private static BytesRef toBytes(String value) {
+        return value == null ? new BytesRef() : new BytesRef(value);
+    }
+
+    /**
+     * Updates validators and crawl time of the indexed source in place, they are durable after the next commit
+     * @return false if the index has no fetch metadata doc values yet, so the source has to be indexed again
+     */
+    private boolean updateFetchMetadata(String path, SourceMetadata metadata) throws IOException {
+        try {
+            getShard(path).getIndexWriter().updateDocValues(new Term(LuceneConstants.SOURCE_PATH, path),
+                    getFetchFields(metadata));
+            return true;
+        } catch (IllegalArgumentException e) {
+            // index written before the fetch metadata was kept in doc values
+            NoobleApplication.log.debug("Fetch metadata of {} not updated: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @param path source path (url etc)
+     * @return true if the source with the path is indexed and searchable, see {@link #getMetadata(String)}
+     * @throws IOException
+     */
+    public boolean isIndexed(String path) throws IOException {
+        return getMetadata(path) != null;
+    }
+
+    /**
+     * Looks up the indexed version of the source by its path. Sources indexed after the last refresh
+     * of the shard searcher are not seen, they are compared by content hash and updated again at worst.
+     * @param path source path (url etc)
+     * @return hash and fetch metadata of the indexed source, null if the source is not indexed
+     * @throws IOException
+     */
+    public SourceMetadata getMetadata(String path) throws IOException {
+        SearcherManager searcherManager = getShard(path).getSearcherManager();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(new Term(LuceneConstants.SOURCE_PATH, path)), 1);
+            if (topDocs.scoreDocs.length == 0) {
+                return null;
+            }
+            int id = topDocs.scoreDocs[0].doc;
+            List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+            LeafReaderContext context = leaves.get(ReaderUtil.subIndex(id, leaves));
+            return readMetadata(context.reader(), id - context.docBase);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Reads fetch metadata from doc values, documents indexed before they were kept in doc values have it stored
+     * @return metadata of the document, null if it is not a crawled source
+     */
+    private static SourceMetadata readMetadata(LeafReader reader, int id) throws IOException {
+        Document document = reader.document(id, METADATA_FIELDS);
+        String hash = document.get(LuceneConstants.SOURCE_HASH);
+        if (hash == null) {
+            return null;
+        }
+        String etag = readBinary(reader, LuceneConstants.SOURCE_ETAG, id);
+        String lastModified = readBinary(reader, LuceneConstants.SOURCE_LAST_MODIFIED, id);
+        NumericDocValues crawlTimes = reader.getNumericDocValues(LuceneConstants.SOURCE_CRAWL_TIME);
+        long crawlTime = crawlTimes == null ? 0 : crawlTimes.get(id);
+        IndexableField storedCrawlTime = document.getField(LuceneConstants.SOURCE_CRAWL_TIME);
+        if (crawlTime == 0 && storedCrawlTime != null) {
+            etag = document.get(LuceneConstants.SOURCE_ETAG);
+            lastModified = document.get(LuceneConstants.SOURCE_LAST_MODIFIED);
+            crawlTime = storedCrawlTime.numericValue().longValue();
+        }
+        return new SourceMetadata(hash, etag, lastModified, crawlTime);
+    }
+
+    private static String readBinary(LeafReader reader, String field, int id) throws IOException {
+        BinaryDocValues values = reader.getBinaryDocValues(field);
+        if (values == null) {
+            return null;
+        }
+        BytesRef value = values.get(id);
+        return value.length == 0 ? null : value.utf8ToString();
+    }
+
+    /**
+     * Reads stored links of the indexed source, used to follow links of not modified pages without loading them
+     * @param path source path (url etc)
+     * @return links of the source, empty if the source is not indexed
+     * @throws IOException
+     */
+    public List<String> getLinks(String path) throws IOException {
+        SearcherManager searcherManager = getShard(path).getSearcherManager();
+        List<String> links = findLinks(searcherManager, path);
+        if (links == null) {
+            // the source may be indexed after the last refresh
+            searcherManager.maybeRefreshBlocking();
+            links = findLinks(searcherManager, path);
+        }
+        return links == null ? Collections.emptyList() : links;
+    }
+
+    private static List<String> findLinks(SearcherManager searcherManager, String path) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(new TermQuery(new Term(LuceneConstants.SOURCE_PATH, path)), 1);
+            if (topDocs.scoreDocs.length == 0) {
+                return null;
+            }
+            Document document = searcher.doc(topDocs.scoreDocs[0].doc,
+                    Collections.singleton(LuceneConstants.SOURCE_LINKS));
+            return Arrays.asList(document.getValues(LuceneConstants.SOURCE_LINKS));
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * @return number of sources indexed since the last commit
+     */
+    public int getUncommittedCount() {
+        return uncommittedCount.get();
+    }
+
+    /**
+     * @return time in ms of the last commit or of the writer opening
+     */
+    public long getCommitTime() {
+        return commitTime;
+    }
+
+    /**
+     * Calculates hex hash of the source title, contents and links. Hash of the source indexed without term vectors
+     * differs, so after switching lucene.index.term-vectors every source is reindexed by the next crawl.
+     * @return hash string
+     */
+    private static String hash(String title, String contents, Collection<String> links, boolean termVectors) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(title.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(contents.getBytes(StandardCharsets.UTF_8));
+        for (String link : links) {
+            digest.update((byte) 0);
+            digest.update(link.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!termVectors) {
+            digest.update(NO_TERM_VECTORS_MARK);
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
     }
 
     /**
@@ -175,6 +675,24 @@ public class Indexer {
     private void indexFile(File file) throws IOException{
         NoobleApplication.log.info("Indexing file: {}", file.getCanonicalPath());
         Document document = getDocument(file);
-        indexWriter.addDocument(document);
+        String path = file.getCanonicalPath();
+        getShard(path).getIndexWriter().updateDocument(new Term(LuceneConstants.SOURCE_PATH, path), document);
+    }
+
+    /**
+     * Notified around every index commit, on the committing thread
+     */
+    public interface CommitListener {
+
+        /**
+         * Sources indexed before this call are in the commit
+         */
+        void beforeCommit();
+
+        /**
+         * Commit is durable
+         * @throws IOException
+         */
+        void afterCommit() throws IOException;
     }
 }
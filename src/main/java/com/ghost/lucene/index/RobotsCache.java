@@ -0,0 +1,192 @@
+package com.ghost.lucene.index;
+
+import com.ghost.NoobleApplication;
+import com.ghost.source.FetchResponse;
+import com.ghost.source.PageFetcher;
+import com.ghost.source.RobotsRules;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.*;
+
+/**
+ * Loads and caches parsed robots.txt of every crawled host, shared by all the crawls.
+ * Rules are loaded in background once per host and reloaded after the expire time.
+ * Hosts without robots.txt (4xx) or not reachable are allowed to be crawled. Server errors (5xx) and 429
+ * disallow the host temporarily (RFC 9309): robots.txt is loaded again after a doubling backoff
+ * or Retry-After, after MAX_RETRIES failed loads the host is disallowed until the expire time.
+ */
+public class RobotsCache implements Closeable {
+
+    // number of threads waiting for responses of blocking fetchers
+    private static final int LOADER_THREADS = 4;
+
+    // first backoff of robots.txt responding with a server error (ms)
+    private static final long MIN_RETRY = 1000;
+
+    // failed loads of robots.txt before the host is disallowed until the expire time
+    private static final int MAX_RETRIES = 5;
+
+    private final PageFetcher fetcher;
+    private final String userAgent;
+    private final long expireTime;
+    private final boolean enabled;
+    private final ExecutorService loader;
+    private final ConcurrentMap<String, Entry> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param fetcher to load robots.txt with
+     * @param userAgent User-Agent header value of the crawler, selects the group of rules
+     * @param expireTime time in ms the rules are cached
+     * @param enabled false to allow all the pages without loading robots.txt
+     */
+    public RobotsCache(PageFetcher fetcher, String userAgent, long expireTime, boolean enabled) {
+        this.fetcher = fetcher;
+        this.userAgent = userAgent;
+        this.expireTime = expireTime;
+        this.enabled = enabled;
+        this.loader = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "robots-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns loaded rules of the url host, starts loading them otherwise. Does not block.
+     * @param url of the page
+     * @return rules of the url host or null if they are not loaded yet
+     */
+    public RobotsRules getIfLoaded(URL url) {
+        CompletableFuture<RobotsRules> rules = load(url);
+        return rules.isDone() ? rules.join() : null;
+    }
+
+    /**
+     * Waits for the rules of the url host
+     * @param url of the page
+     * @return rules of the url host
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public RobotsRules get(URL url) throws InterruptedIOException {
+        try {
+            return load(url).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted loading robots.txt of " + url.getHost());
+        } catch (ExecutionException e) {
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+
+    /**
+     * @param url of the page
+     * @return true if robots.txt of the host allows the crawler to load the page, waits for the rules
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public boolean isAllowed(URL url) throws InterruptedIOException {
+        return get(url).isAllowed(getPath(url));
+    }
+
+    /**
+     * @return number of cached hosts
+     */
+    public int size() {
+        return hosts.size();
+    }
+
+    private CompletableFuture<RobotsRules> load(URL url) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(RobotsRules.ALLOW_ALL);
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = hosts.compute(getHostKey(url), (host, cached) -> {
+            if (cached == null) {
+                return new Entry(loadRules(url, 0), now, 0);
+            }
+            RobotsRules rules = cached.rules.getNow(null);
+            if (rules != null && rules.isTemporary()) {
+                return now < rules.getRetryTime() ? cached
+                        : new Entry(loadRules(url, cached.retries + 1), now, cached.retries + 1);
+            }
+            return now - cached.loadTime > expireTime ? new Entry(loadRules(url, 0), now, 0) : cached;
+        });
+        return entry.rules;
+    }
+
+    /**
+     * @param retries number of previous loads failed with a server error
+     */
+    private CompletableFuture<RobotsRules> loadRules(URL url, int retries) {
+        URL robotsUrl;
+        try {
+            robotsUrl = new URL(url.getProtocol(), url.getHost(), url.getPort(), "/robots.txt");
+        } catch (MalformedURLException e) {
+            return CompletableFuture.completedFuture(RobotsRules.ALLOW_ALL);
+        }
+        // blocking fetchers complete the request in fetch() call, so it is started by the loader
+        return CompletableFuture.supplyAsync(() -> robotsUrl, loader)
+                .thenCompose(fetcher::fetch)
+                .thenApply(response -> parse(response, retries))
+                .exceptionally(e -> {
+                    NoobleApplication.log.debug("Error loading {}: {}", robotsUrl, e.getMessage());
+                    return RobotsRules.ALLOW_ALL;
+                });
+    }
+
+    private RobotsRules parse(FetchResponse response, int retries) {
+        int status = response.getStatus();
+        if (status == 429 || status >= 500) {
+            if (retries >= MAX_RETRIES) {
+                NoobleApplication.log.warn("{} responded {} {} times, host is disallowed for {} s", response.getUrl(),
+                        status, retries + 1, expireTime / 1000);
+                return RobotsRules.disallowAll(0);
+            }
+            long delay = Math.min(expireTime, Math.max(MIN_RETRY << retries, response.getRetryAfter()));
+            NoobleApplication.log.debug("{} responded {}, retry in {} ms", response.getUrl(), status, delay);
+            return RobotsRules.disallowAll(System.currentTimeMillis() + Math.max(1, delay));
+        }
+        if (!response.isSuccessful()) {
+            return RobotsRules.ALLOW_ALL;
+        }
+        RobotsRules rules = RobotsRules.parse(response.getText(), userAgent);
+        NoobleApplication.log.debug("Loaded {}, crawl delay {} ms", response.getUrl(), rules.getCrawlDelay());
+        return rules;
+    }
+
+    /**
+     * @return path and query of the url matched against the rules
+     */
+    public static String getPath(URL url) {
+        String path = url.getFile();
+        return path.isEmpty() ? "/" : path;
+    }
+
+    /**
+     * @return scheme, host and port the rules are valid for
+     */
+    public static String getHostKey(URL url) {
+        return url.getProtocol() + "://" + url.getHost() + ":" + (url.getPort() < 0 ? url.getDefaultPort() : url.getPort());
+    }
+
+    @Override
+    public void close() throws IOException {
+        loader.shutdownNow();
+    }
+
+    private static class Entry {
+
+        private final CompletableFuture<RobotsRules> rules;
+        private final long loadTime;
+        private final int retries;
+
+        Entry(CompletableFuture<RobotsRules> rules, long loadTime, int retries) {
+            this.rules = rules;
+            this.loadTime = loadTime;
+            this.retries = retries;
+        }
+    }
+}
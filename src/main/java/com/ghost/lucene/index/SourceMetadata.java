@@ -0,0 +1,63 @@
+package com.ghost.lucene.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fetch metadata of an indexed source: content hash and HTTP validators of the indexed version,
+ * time the version was crawled. Validators are sent by the next crawl as conditional request headers.
+ */
+public class SourceMetadata {
+
+    private final String hash;
+    private final String etag;
+    private final String lastModified;
+    private final long crawlTime;
+
+    /**
+     * @param hash of the indexed title, contents and links
+     * @param etag ETag response header, may be null
+     * @param lastModified Last-Modified response header, may be null
+     * @param crawlTime time in ms the source was loaded, 0 if unknown
+     */
+    public SourceMetadata(String hash, String etag, String lastModified, long crawlTime) {
+        this.hash = hash;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.crawlTime = crawlTime;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getCrawlTime() {
+        return crawlTime;
+    }
+
+    /**
+     * @return If-None-Match and If-Modified-Since headers of the indexed version, empty if the source
+     * was indexed without links, so its links could not be followed from the index
+     */
+    public Map<String, String> getConditionalHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (crawlTime == 0) {
+            return headers;
+        }
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ghost.lucene.index;
+
+import com.ghost.lucene.LuceneProperties;
+
+/**
+ * Crawl scoped set of already scheduled links. Implementations must be safe for concurrent use.
+ */
+public interface VisitedSet {
+
+    /**
+     * Marks link as visited
+     * @param link normalized link
+     * @return true if the link was not visited before
+     */
+    boolean add(String link);
+
+    /**
+     * @return approximate number of visited links
+     */
+    long size();
+
+    /**
+     * Creates visited set of the type specified in lucene.properties
+     * @param properties index params
+     * @return new empty visited set
+     */
+    static VisitedSet create(LuceneProperties.Index properties) {
+        switch (properties.getVisited()) {
+            case BLOOM: return new BloomVisitedSet(properties.getVisitedExpected(), properties.getVisitedFpp());
+        }
+        return new ConcurrentVisitedSet();
+    }
+
+    enum Type {
+        EXACT, BLOOM
+    }
+}
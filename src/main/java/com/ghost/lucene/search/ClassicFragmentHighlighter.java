@@ -0,0 +1,77 @@
+package com.ghost.lucene.search;
+
+import com.ghost.NoobleApplication;
+import com.ghost.lucene.LuceneConstants;
+import com.ghost.lucene.LuceneProperties;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.highlight.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Highlights fragments with classic {@link Highlighter}. Token stream is rebuilt from term vectors,
+ * or by analyzing the stored contents if document was indexed without term vectors.
+ */
+public class ClassicFragmentHighlighter implements FragmentHighlighter {
+
+    private static final Set<String> CONTENTS_FIELD = Collections.singleton(LuceneConstants.CONTENTS);
+
+    private final LuceneProperties.Search properties;
+    private final Analyzer analyzer;
+    private final Formatter formatter;
+
+    public ClassicFragmentHighlighter(LuceneProperties.Search properties, Analyzer analyzer) {
+        this.properties = properties;
+        this.analyzer = analyzer;
+        this.formatter = new SimpleHTMLFormatter(properties.getPreFormat(), properties.getPostFormat());
+    }
+
+    @Override
+    public String[] getFragments(IndexSearcher indexSearcher, Query query, int[] ids) throws IOException {
+        Highlighter highlighter = new Highlighter(formatter, new QueryScorer(query));
+        // fragmenter keeps state while fragmenting, so it is created per page
+        highlighter.setTextFragmenter(new SimpleFragmenter(properties.getFragmentSize()));
+        highlighter.setMaxDocCharsToAnalyze(properties.getHighlightMaxChars());
+        String[] fragments = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            fragments[i] = getFragment(indexSearcher, highlighter, ids[i]);
+        }
+        return fragments;
+    }
+
+    /**
+     * Retrieves of most scored fragments in contents and put them together using specified
+     * separator. Number of fragments and separator defined in lucene.properties
+     * @param indexSearcher acquired searcher the document was found with
+     * @param highlighter query highlighter
+     * @param id Found document id
+     * @return contents fragment
+     * @throws IOException
+     */
+    private String getFragment(IndexSearcher indexSearcher, Highlighter highlighter, int id) throws IOException {
+        Document document = indexSearcher.doc(id, CONTENTS_FIELD);
+        String text = document.get(LuceneConstants.CONTENTS);
+        if (text == null) {
+            NoobleApplication.log.error("Fragment is null! for doc: {}", id);
+            return "";
+        }
+        Fields fields = indexSearcher.getIndexReader().getTermVectors(id);
+        TokenStream tokenStream = TokenSources.getTokenStream(LuceneConstants.CONTENTS,
+                fields, text, analyzer, highlighter.getMaxDocCharsToAnalyze() - 1);
+        try {
+            return highlighter.getBestFragments(tokenStream, text,
+                    properties.getMaxFragments(),
+                    properties.getFragmentSeparator());
+        } catch (InvalidTokenOffsetsException e) {
+            NoobleApplication.log.error("Invalid Token Offsets for doc: {}", id);
+        }
+        return "";
+    }
+}
@@ -0,0 +1,43 @@
+package com.ghost.lucene.search;
+
+import com.ghost.lucene.LuceneProperties;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+
+/**
+ * Forms highlighted contents fragments of found documents. Implementations must be safe for concurrent use.
+ */
+public interface FragmentHighlighter {
+
+    /**
+     * @param indexSearcher acquired searcher the documents were found with
+     * @param query found query
+     * @param ids found Lucene document ids
+     * @return contents fragments in the order of ids, empty string if document has no fragment
+     * @throws IOException
+     */
+    String[] getFragments(IndexSearcher indexSearcher, Query query, int[] ids) throws IOException;
+
+    /**
+     * Creates highlighter of the type specified in lucene.properties
+     * @param properties search params
+     * @param analyzer contents analyzer, used if document has no term vectors
+     * @return new highlighter
+     */
+    static FragmentHighlighter create(LuceneProperties.Search properties, Analyzer analyzer) {
+        switch (properties.getHighlighter()) {
+            case POSTINGS: return new PostingsFragmentHighlighter(properties);
+        }
+        return new ClassicFragmentHighlighter(properties, analyzer);
+    }
+
+    enum Type {
+        /** Analyzes stored text or term vectors of every hit, see {@link ClassicFragmentHighlighter} */
+        CLASSIC,
+        /** Uses offsets stored in postings, see {@link PostingsFragmentHighlighter} */
+        POSTINGS
+    }
+}
@@ -0,0 +1,48 @@
+package com.ghost.lucene.search;
+
+import com.ghost.lucene.LuceneConstants;
+import com.ghost.lucene.LuceneProperties;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.postingshighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.postingshighlight.PassageFormatter;
+import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
+
+import java.io.IOException;
+
+/**
+ * Highlights sentences with {@link PostingsHighlighter} using term offsets indexed in postings.
+ * Neither term vectors nor analyzing of the contents are needed, so the index may be built
+ * with lucene.index.term-vectors=false.
+ */
+public class PostingsFragmentHighlighter implements FragmentHighlighter {
+
+    private final LuceneProperties.Search properties;
+    private final PostingsHighlighter highlighter;
+
+    public PostingsFragmentHighlighter(LuceneProperties.Search properties) {
+        this.properties = properties;
+        PassageFormatter formatter = new DefaultPassageFormatter(properties.getPreFormat(),
+                properties.getPostFormat(), properties.getFragmentSeparator(), false);
+        this.highlighter = new PostingsHighlighter(properties.getHighlightMaxChars()) {
+            @Override
+            protected PassageFormatter getFormatter(String field) {
+                return formatter;
+            }
+        };
+    }
+
+    @Override
+    public String[] getFragments(IndexSearcher indexSearcher, Query query, int[] ids) throws IOException {
+        String[] fields = {LuceneConstants.CONTENTS};
+        int[] maxPassages = {properties.getMaxFragments()};
+        String[] fragments = highlighter.highlightFields(fields, query, indexSearcher, ids, maxPassages)
+                .get(LuceneConstants.CONTENTS);
+        for (int i = 0; i < fragments.length; i++) {
+            if (fragments[i] == null) {
+                fragments[i] = "";
+            }
+        }
+        return fragments;
+    }
+}
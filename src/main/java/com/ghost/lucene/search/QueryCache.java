@@ -0,0 +1,153 @@
+package com.ghost.lucene.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of search pages bounded by approximate size of the pages in memory.
+ * Cache has a generation, which is changed on every invalidation. Pages searched
+ * before invalidation are not put, so stale pages never get into the cache.
+ */
+public class QueryCache {
+
+    // approximate size of the page and document objects without strings
+    private static final int PAGE_OVERHEAD = 128;
+    private static final int DOCUMENT_OVERHEAD = 64;
+
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private volatile long generation;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maxWeight max approximate size of cached pages in bytes, 0 disables the cache
+     */
+    public QueryCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return current generation, to be passed to {@link #put(String, SearchPage, long)}
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param key of the page
+     * @return cached page or null
+     */
+    public SearchPage get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = pages.get(key);
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry.page;
+    }
+
+    /**
+     * Checks the page is cached without counting hit or miss
+     * @param key of the page
+     * @return true if the page is cached
+     */
+    public synchronized boolean contains(String key) {
+        return pages.containsKey(key);
+    }
+
+    /**
+     * Caches the page if cache was not invalidated since the page search was started
+     * @param key of the page
+     * @param page to cache
+     * @param generation of the cache taken before the page search
+     */
+    public void put(String key, SearchPage page, long generation) {
+        long pageWeight = weigh(key, page);
+        if (pageWeight > maxWeight) {
+            return;
+        }
+        synchronized (this) {
+            if (generation != this.generation) {
+                return;
+            }
+            Entry previous = pages.put(key, new Entry(page, pageWeight));
+            weight += pageWeight - (previous == null ? 0 : previous.weight);
+            Iterator<Entry> eldest = pages.values().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes all the pages and changes the generation
+     */
+    public synchronized void invalidate() {
+        generation++;
+        pages.clear();
+        weight = 0;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public synchronized int getSize() {
+        return pages.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "hits " + getHitCount() + ", misses " + getMissCount() + ", evictions " + getEvictionCount()
+                + ", pages " + getSize() + ", bytes " + getWeight();
+    }
+
+    /**
+     * @return approximate size of the page in bytes
+     */
+    private static long weigh(String key, SearchPage page) {
+        long chars = key.length() + length(page.getQuery()) + length(page.getCursor());
+        for (SearchDocument document : page.getDocuments()) {
+            chars += length(document.getTitle()) + length(document.getFragment()) + length(document.getPath());
+        }
+        return PAGE_OVERHEAD + (long) DOCUMENT_OVERHEAD * page.getDocuments().size() + 2 * chars;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static class Entry {
+
+        private final SearchPage page;
+        private final long weight;
+
+        Entry(SearchPage page, long weight) {
+            this.page = page;
+            this.weight = weight;
+        }
+    }
+}
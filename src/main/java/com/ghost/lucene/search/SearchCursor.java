@@ -0,0 +1,91 @@
+package com.ghost.lucene.search;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Position after the last shown hit: its score, doc id, shard and versions of the shard searchers it was found with.
+ * Passed to the client as opaque token, so the server keeps no paging state.
+ */
+public class SearchCursor {
+
+    private static final int HIT_SIZE = Integer.BYTES + Float.BYTES + Integer.BYTES;
+
+    private final long[] searcherVersions;
+    private final ScoreDoc after;
+
+    /**
+     * @param searcherVersions version of the searcher of every shard
+     * @param after last shown hit, its shard index is set by merge of the shard hits
+     */
+    public SearchCursor(long[] searcherVersions, ScoreDoc after) {
+        this.searcherVersions = searcherVersions;
+        this.after = after;
+    }
+
+    public long[] getSearcherVersions() {
+        return searcherVersions;
+    }
+
+    public ScoreDoc getAfter() {
+        return after;
+    }
+
+    /**
+     * Hits of merged shards are ordered by score, shard and doc id. Position of the hit in the shard:
+     * shards before the hit shard continue from lower scores, shards after it from the same score.
+     * @param shard index of the shard
+     * @param maxDoc of the shard reader, hits of the same score are skipped up to the last doc id
+     * @return hit to search after in the shard
+     */
+    public ScoreDoc getAfter(int shard, int maxDoc) {
+        if (shard < after.shardIndex) {
+            return new ScoreDoc(maxDoc - 1, after.score);
+        }
+        if (shard > after.shardIndex) {
+            return new ScoreDoc(-1, after.score);
+        }
+        return after;
+    }
+
+    /**
+     * @return url safe token of the cursor
+     */
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(searcherVersions.length * Long.BYTES + HIT_SIZE);
+        for (long searcherVersion : searcherVersions) {
+            buffer.putLong(searcherVersion);
+        }
+        buffer.putInt(after.doc)
+                .putFloat(after.score)
+                .putInt(after.shardIndex);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @param token formed by {@link #encode()}
+     * @param shardCount number of the searched shards
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public static SearchCursor decode(String token, int shardCount) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != shardCount * Long.BYTES + HIT_SIZE) {
+            throw new IllegalArgumentException("Invalid search cursor: " + token);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] searcherVersions = new long[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            searcherVersions[shard] = buffer.getLong();
+        }
+        int doc = buffer.getInt();
+        float score = buffer.getFloat();
+        int shardIndex = buffer.getInt();
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid search cursor: " + token);
+        }
+        return new SearchCursor(searcherVersions, new ScoreDoc(doc, score, shardIndex));
+    }
+}
@@ -0,0 +1,14 @@
+package com.ghost.lucene.search;
+
+/**
+ * Searcher of the cursor is closed, so its page can not be continued: doc ids of the cursor belong to
+ * that reader only. The query is to be searched again from the first page.
+ */
+public class SearchCursorExpiredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SearchCursorExpiredException(String message) {
+        super(message);
+    }
+}
@@ -4,18 +4,18 @@ import com.fasterxml.jackson.annotation.JsonView;
 import com.ghost.json.View;
 
 /**
- *  Holds main fields of searched documents and used to translate via json
+ *  Holds main fields of searched documents and used to translate via json. Immutable.
  */
 public class SearchDocument {
 
     @JsonView(View.Public.class)
-    private String title;
+    private final String title;
 
     @JsonView(View.Public.class)
-    private String fragment;
+    private final String fragment;
 
     @JsonView(View.Public.class)
-    private String path;
+    private final String path;
 
     public SearchDocument(String title, String fragment, String path) {
         this.title = title;
@@ -34,16 +34,4 @@ public class SearchDocument {
     public String getPath() {
         return path;
     }
-
-    public void setTitle(String title) {
-        this.title = title;
-    }
-
-    public void setFragment(String fragment) {
-        this.fragment = fragment;
-    }
-
-    public void setPath(String path) {
-        this.path = path;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.ghost.lucene.search;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import com.ghost.json.View;
+import com.ghost.lucene.LuceneUtility;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable page of search results: loaded documents and cursor to the next page
+ */
+public class SearchPage {
+
+    private final String query;
+    private final int totalHits;
+
+    @JsonView(View.Public.class)
+    private final List<SearchDocument> documents;
+
+    @JsonView(View.Public.class)
+    private final String cursor;
+
+    private final long searchTime;
+
+    /**
+     * @param query search query
+     * @param totalHits total count of found documents
+     * @param documents loaded documents of the page
+     * @param cursor token of the next page, null if this page is the last
+     * @param searchTime in milliseconds
+     */
+    public SearchPage(String query, int totalHits, List<SearchDocument> documents, String cursor, long searchTime) {
+        this.query = query;
+        this.totalHits = totalHits;
+        this.documents = Collections.unmodifiableList(documents);
+        this.cursor = cursor;
+        this.searchTime = searchTime;
+    }
+
+    /**
+     * Creates the same page with given search time
+     * @param searchTime in milliseconds
+     * @return new page
+     */
+    public SearchPage withSearchTime(long searchTime) {
+        return new SearchPage(query, totalHits, documents, cursor, searchTime);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public List<SearchDocument> getDocuments() {
+        return documents;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean hasNext() {
+        return cursor != null;
+    }
+
+    public long getSearchTime() {
+        return searchTime;
+    }
+
+    public String getSearchTimeString() {
+        return LuceneUtility.formatTime(searchTime);
+    }
+}
@@ -1,84 +1,176 @@
 package com.ghost.lucene.search;
 
+import com.ghost.NoobleApplication;
 import com.ghost.lucene.LuceneProperties;
-import com.ghost.lucene.LuceneUtility;
+import com.ghost.metrics.LatencyMetrics;
 import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.ReferenceManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
- * Uses Indexer to index URL source
+ * Uses Searcher to search indexed sources. Keeps no per query state, so it serves concurrent queries.
+ * Found pages are cached until the searcher is refreshed with index changes.
  */
 @Service
 public class SearchService {
 
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private static final String WHITESPACE_PATTERN = "\\s+";
+
     @Autowired
     private LuceneProperties luceneProperties;
 
     @Autowired
     private Searcher searcher;
-    private long searchTime;
     private int docsPerPage;
-    private Collection<SearchDocument> resultDocs = new ArrayList<>();
+    private ExecutorService prefetchExecutor;
+    private QueryCache queryCache;
 
-    /** Queries sent during session */
-    private Collection<String> sentQueries = new HashSet<>();
+    /** Pages being searched in background by query and cursor */
+    private final Map<String, CompletableFuture<SearchPage>> prefetchingPages = new ConcurrentHashMap<>();
 
     public SearchService() {}
 
-    public Collection<String> getSentQueries() {
-        return sentQueries;
+    public QueryCache getQueryCache() {
+        return queryCache;
     }
 
     @PostConstruct
     public void init() {
         docsPerPage = luceneProperties.getSearch().getPerPage();
+        queryCache = new QueryCache(luceneProperties.getSearch().getCacheSizeMb() * BYTES_PER_MB);
+        searcher.addRefreshListener(new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {}
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (didRefresh) {
+                    NoobleApplication.log.debug("Query cache invalidated: {}", queryCache);
+                    queryCache.invalidate();
+                }
+            }
+        });
+        if (luceneProperties.getSearch().isPrefetch()) {
+            prefetchExecutor = Executors.newFixedThreadPool(luceneProperties.getSearch().getPrefetchThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "search-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Call this method to start specified query searching
+     * @param queryString query to find
+     * @return first page of found documents
+     * @throws IOException
+     */
+    public SearchPage search(String queryString) throws IOException, ParseException {
+        return search(queryString, null);
     }
 
     /**
-     * Call this method to start specified URL searching
+     * Searches page of the query from the cursor. Cached page is returned if the query page was already found
+     * and index has not changed since. If lucene.search.prefetch is on, the next page is searched in background.
      * @param queryString query to find
+     * @param cursor token of the page returned with previous page, null for the first page
+     * @return page of found documents
      * @throws IOException
+     * @throws IllegalArgumentException if cursor token is not valid
+     * @throws SearchCursorExpiredException if the cursor searcher is closed, the query is to be searched again
      */
-    public void search(String queryString) throws IOException, ParseException {
-        // TODO: create separate thread for search?
-        long startTime = System.currentTimeMillis();
-        resultDocs.clear();
-        searcher.search(queryString);
-        resultDocs = searcher.getSearchDocs();
-        searchTime = System.currentTimeMillis() - startTime;
+    public SearchPage search(String queryString, String cursor) throws IOException, ParseException {
+        long startTime = System.nanoTime();
+        String query = normalizeQuery(queryString);
+        String key = getPageKey(query, cursor);
+        SearchPage page = queryCache.get(key);
+        if (page == null) {
+            page = getPrefetched(key);
+        }
+        if (page == null) {
+            long generation = queryCache.getGeneration();
+            page = searcher.search(query, cursor, docsPerPage);
+            queryCache.put(key, page, generation);
+        }
+        if (cursor == null) {
+            // parsed query warms up next searchers
+            searcher.getWarmUpQueries().add(query);
+        }
+        if (prefetchExecutor != null && page.hasNext()) {
+            prefetch(query, page.getCursor());
+        }
+        long searchTime = System.nanoTime() - startTime;
+        LatencyMetrics.SEARCH.record(searchTime);
+        return page.withSearchTime(TimeUnit.NANOSECONDS.toMillis(searchTime));
     }
 
-    public String getSearchTimeString() {
-        return LuceneUtility.formatTime(searchTime);
+    /**
+     * Starts background search of the page, found page is put to the cache
+     */
+    private void prefetch(String query, String cursor) {
+        String key = getPageKey(query, cursor);
+        CompletableFuture<SearchPage> page = new CompletableFuture<>();
+        if (queryCache.contains(key) || prefetchingPages.putIfAbsent(key, page) != null) {
+            return;
+        }
+        long generation = queryCache.getGeneration();
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    SearchPage prefetched = searcher.search(query, cursor, docsPerPage);
+                    queryCache.put(key, prefetched, generation);
+                    page.complete(prefetched);
+                } catch (Exception e) {
+                    page.completeExceptionally(e);
+                } finally {
+                    prefetchingPages.remove(key, page);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            prefetchingPages.remove(key, page);
+        }
     }
 
-    public int getTotalHits() {
-        return searcher.getTotalHits();
+    /**
+     * Waits for the page being searched in background
+     * @return prefetched page or null if the page is not prefetching or failed
+     */
+    private SearchPage getPrefetched(String key) {
+        CompletableFuture<SearchPage> page = prefetchingPages.get(key);
+        if (page == null) {
+            return null;
+        }
+        try {
+            return page.join();
+        } catch (CompletionException | CancellationException e) {
+            NoobleApplication.log.error("Prefetch failed: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Retrieves a part of found docs according to results per page property in lucene.properties
-     * @param start is a an index of the last displayed document
-     * @return a part of the list of found docs from start+1 index with resultsPerPage length
+     * Trims query and collapses whitespaces, so the same queries share cached pages
      */
-    public Collection<SearchDocument> getResultDocs(int start) {
-        return resultDocs
-                .stream()
-                .skip(start)
-                .limit(docsPerPage)
-                .collect(Collectors.toList());
+    private static String normalizeQuery(String queryString) {
+        return queryString.trim().replaceAll(WHITESPACE_PATTERN, " ");
     }
 
-    /** Resets value of showed document count  */
-    public int getStart() {
-        return searcher.getTotalHits() > docsPerPage ? docsPerPage : 0;
+    private static String getPageKey(String query, String cursor) {
+        return cursor + "\n" + query;
     }
 }
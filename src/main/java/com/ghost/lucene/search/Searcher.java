@@ -3,50 +3,78 @@ package com.ghost.lucene.search;
 import com.ghost.NoobleApplication;
 import com.ghost.lucene.LuceneConstants;
 import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.index.IndexShard;
 import com.ghost.lucene.index.Indexer;
+import com.ghost.metrics.LatencyMetrics;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.Fields;
-import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopScoreDocCollector;
-import org.apache.lucene.search.highlight.*;
+import org.apache.lucene.search.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class Searcher {
 
+    // stored fields shown in search results, contents are loaded by highlighter if needed
+    private static final Set<String> RESULT_FIELDS = new HashSet<>(Arrays.asList(
+            LuceneConstants.SOURCE_TITLE, LuceneConstants.SOURCE_PATH));
+
     @Autowired
     private LuceneProperties luceneProperties;
 
     @Autowired
     private Indexer indexer;
 
-    private IndexSearcher indexSearcher;
-    private DirectoryReader directoryReader;
-    private TopScoreDocCollector collector;
-    private ScoreDoc[] hits;
+    /** Searcher manager shared with the indexer and lifetime manager of every index shard */
+    private final List<SearcherManager> searcherManagers = new ArrayList<>();
+    private final List<SearcherLifetimeManager> lifetimeManagers = new ArrayList<>();
+    private ScheduledExecutorService refreshExecutor;
+    /** Searches shards of a query in parallel, null if the index has one shard */
+    private ThreadPoolExecutor shardExecutor;
+    /** Searches segments of a shard in parallel, null if segments are searched by the calling thread */
+    private ThreadPoolExecutor segmentExecutor;
     private Analyzer analyzer;
-    private Highlighter highlighter;
-    private Formatter formatter;
-    private Fragmenter fragmenter;
+    private FragmentHighlighter fragmentHighlighter;
+    private WarmUpQueries warmUpQueries;
+    /** Time in ms of the last warm up of a new searcher */
+    private volatile long warmUpTime;
 
     public Searcher() {}
 
+    /**
+     * Creates searcher outside of Spring context, call {@link #init()} before use
+     * @param luceneProperties search params
+     * @param indexer initialized indexer to search its index
+     */
+    public Searcher(LuceneProperties luceneProperties, Indexer indexer) {
+        this.luceneProperties = luceneProperties;
+        this.indexer = indexer;
+    }
+
     public void setAnalyzer(Analyzer analyzer) {
         if (analyzer != null) {
             this.analyzer = analyzer;
@@ -54,14 +82,29 @@ public class Searcher {
     }
 
     /**
-     * Initializes directory reader from index writer. So it is possible to perform index and search ar one time.
-     * Also by default initializes StandardAnalyzer, SimpleHTMLFormatter and SimpleFragmenter
+     * Uses near-real-time searcher manager of index writer of every shard, the managers are shared with
+     * the indexer. So it is possible to perform index and search at one time. Searchers are refreshed
+     * by background thread, so they are at most lucene.search.refresh-max-stale milliseconds behind the index
+     * and queries never wait for reopening.
+     * Every new searcher is warmed up before it is used by queries, see {@link #warmUp(IndexSearcher)}.
+     * Also by default initializes StandardAnalyzer and highlighter of lucene.search.highlighter type
      */
     @PostConstruct
     public void init() throws IOException {
+        analyzer = new StandardAnalyzer();
+        String warmUpFile = luceneProperties.getSearch().getWarmUpFile();
+        warmUpQueries = WarmUpQueries.load(warmUpFile == null || warmUpFile.isEmpty() ? null : Paths.get(warmUpFile),
+                luceneProperties.getSearch().getWarmUpQueries());
+        SearcherFactory searcherFactory = createSearcherFactory();
         try {
-            IndexWriter indexWriter = indexer.getIndexWriter();
-            directoryReader = DirectoryReader.open(indexWriter);
+            for (IndexShard shard : indexer.getShards()) {
+                shard.setSearcherFactory(searcherFactory);
+                SearcherManager searcherManager = shard.getSearcherManager();
+                // searcher opened by the indexer lookups may miss the latest sources
+                searcherManager.maybeRefreshBlocking();
+                searcherManagers.add(searcherManager);
+                lifetimeManagers.add(new SearcherLifetimeManager());
+            }
         } catch (CorruptIndexException e) {
             NoobleApplication.log.error("Corrupt Index Exception!", e);
             throw new RuntimeException(e);
@@ -69,92 +112,314 @@ public class Searcher {
             NoobleApplication.log.error("IO Error open Index Reader!", e);
             throw new RuntimeException(e);
         }
-        analyzer = new StandardAnalyzer();
-        formatter = new SimpleHTMLFormatter(luceneProperties.getSearch().getPreFormat(),
-                luceneProperties.getSearch().getPostFormat());
-        fragmenter = new SimpleFragmenter(luceneProperties.getSearch().getFragmentSize());
+        fragmentHighlighter = FragmentHighlighter.create(luceneProperties.getSearch(), analyzer);
+        // scheduled refresh needs a positive delay
+        long maxStale = Math.max(1, luceneProperties.getSearch().getRefreshMaxStale());
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "searcher-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, maxStale, maxStale, TimeUnit.MILLISECONDS);
+        if (searcherManagers.size() > 1) {
+            // the calling thread searches one of the shards, shards of concurrent queries over the queue too
+            shardExecutor = createExecutor("search-shard-", searcherManagers.size(), searcherManagers.size());
+        }
+    }
+
+    /**
+     * Searchers score segments in parallel by lucene.search.search-threads threads. Segment tasks over
+     * lucene.search.search-queue are run by the calling thread, so under load queries fall back
+     * to single threaded search instead of waiting for the pool. New searchers are warmed up.
+     * @return factory of searchers of the shards
+     */
+    private SearcherFactory createSearcherFactory() {
+        int searchThreads = luceneProperties.getSearch().getSearchThreads();
+        if (searchThreads == 0) {
+            searchThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (searchThreads > 1) {
+            segmentExecutor = createExecutor("search-segment-", searchThreads,
+                    luceneProperties.getSearch().getSearchQueue());
+        }
+        return new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                IndexSearcher indexSearcher = segmentExecutor == null
+                        ? new IndexSearcher(reader)
+                        : new IndexSearcher(reader, segmentExecutor);
+                warmUp(indexSearcher);
+                return indexSearcher;
+            }
+        };
+    }
+
+    /**
+     * @return executor of search tasks, tasks over the queue are run by the calling thread
+     */
+    private static ThreadPoolExecutor createExecutor(String threadName, int threads, int queue) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadName + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Runs warm up queries on the searcher before it is published, so the first queries on new segments
+     * do not load norms, postings and stored fields from disk. Called by the thread refreshing the shard
+     * searcher: the refresh thread, the initializing thread or the indexer. Failed queries are skipped.
+     * @param indexSearcher new searcher
+     */
+    private void warmUp(IndexSearcher indexSearcher) {
+        List<String> queries = warmUpQueries.getQueries();
+        if (queries.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        QueryParser queryParser = new QueryParser(LuceneConstants.CONTENTS, analyzer);
+        int count = luceneProperties.getSearch().getPerPage();
+        for (String queryString : queries) {
+            try {
+                TopDocs topDocs = indexSearcher.search(queryParser.parse(queryString), count);
+                for (ScoreDoc hit : topDocs.scoreDocs) {
+                    indexSearcher.doc(hit.doc, RESULT_FIELDS);
+                }
+            } catch (ParseException | IOException | RuntimeException e) {
+                NoobleApplication.log.warn("Warm up query failed: {} {}", queryString, e.getMessage());
+            }
+        }
+        warmUpTime = System.currentTimeMillis() - startTime;
+        NoobleApplication.log.info("Searcher {} warmed up by {} queries in {} ms", indexSearcher.getIndexReader(),
+                queries.size(), warmUpTime);
+    }
+
+    /**
+     * @return queries run on new searchers, add sent queries to it
+     */
+    public WarmUpQueries getWarmUpQueries() {
+        return warmUpQueries;
+    }
+
+    /**
+     * @return time in ms of the last warm up of a new searcher, 0 if no searcher was warmed up
+     */
+    public long getWarmUpTime() {
+        return warmUpTime;
+    }
+
+    /**
+     * Stops the search executors, searcher managers are closed with the indexer
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        // indexer refreshes must not use the stopped executors
+        for (IndexShard shard : indexer.getShards()) {
+            shard.setSearcherFactory(null);
+        }
+        refreshExecutor.shutdownNow();
+        if (shardExecutor != null) {
+            shardExecutor.shutdownNow();
+        }
+        if (segmentExecutor != null) {
+            segmentExecutor.shutdownNow();
+        }
+        for (SearcherLifetimeManager lifetimeManager : lifetimeManagers) {
+            lifetimeManager.close();
+        }
+    }
+
+    /**
+     * @param listener to be notified when the searcher of any shard is refreshed
+     */
+    public void addRefreshListener(ReferenceManager.RefreshListener listener) {
+        for (SearcherManager searcherManager : searcherManagers) {
+            searcherManager.addListener(listener);
+        }
     }
 
     /**
-     * Performs search of the given query.
-     * As search results returns hits, collectors and highlighter.
-     * Max search results count defined in lucene.properties
+     * Reopens searchers of the changed shards and closes searchers recorded for paging
+     * longer than lucene.search.searcher-max-age seconds ago. Called by refresh thread.
+     */
+    private void refresh() {
+        try {
+            for (SearcherManager searcherManager : searcherManagers) {
+                searcherManager.maybeRefresh();
+            }
+            for (SearcherLifetimeManager lifetimeManager : lifetimeManagers) {
+                lifetimeManager.prune(
+                        new SearcherLifetimeManager.PruneByAge(luceneProperties.getSearch().getSearcherMaxAge()));
+            }
+        } catch (IOException e) {
+            NoobleApplication.log.error("Error refreshing index searcher!", e);
+        }
+    }
+
+    /**
+     * Performs search of one page of the given query. Safe for concurrent use, all the query state
+     * is local and returned as immutable page. Shards are searched in parallel, top hits of every shard
+     * are merged. Next pages are searched with searchAfter from the cursor, on the same shard searchers
+     * as the first page, so paging is not limited in depth. Paging is never continued on other readers,
+     * doc ids of the cursor are not valid there.
+     * Stored fields are loaded and highlighted only for the page documents.
      * @param queryString search query
+     * @param cursorToken cursor of the page, null for the first page
+     * @param count number of documents per page
+     * @return found page
      * @throws IOException
      * @throws ParseException
+     * @throws IllegalArgumentException if cursor token is not valid
+     * @throws SearchCursorExpiredException if a searcher of the cursor is pruned, see lucene.search.searcher-max-age
      */
-    public void search(String queryString) throws IOException, ParseException {
-        DirectoryReader newDirectoryReader = DirectoryReader.openIfChanged(directoryReader);
-        directoryReader = newDirectoryReader == null ? directoryReader : newDirectoryReader;
-        indexSearcher = new IndexSearcher(directoryReader);
+    public SearchPage search(String queryString, String cursorToken, int count) throws IOException, ParseException {
+        long startTime = System.nanoTime();
         QueryParser queryParser = new QueryParser(LuceneConstants.CONTENTS, analyzer);
         Query query = queryParser.parse(queryString);
-        collector = TopScoreDocCollector.create(luceneProperties.getSearch().getMax());
-        indexSearcher.search(query, collector);
-        hits = collector.topDocs().scoreDocs;
-        highlighter = new Highlighter(formatter, new QueryScorer(query));
-        highlighter.setTextFragmenter(fragmenter);
+        LatencyMetrics.SEARCH_PARSE.recordSince(startTime);
+        int shardCount = searcherManagers.size();
+        SearchCursor cursor = cursorToken == null ? null : SearchCursor.decode(cursorToken, shardCount);
+        IndexSearcher[] indexSearchers = new IndexSearcher[shardCount];
+        boolean[] current = new boolean[shardCount];
+        try {
+            startTime = System.nanoTime();
+            long[] searcherVersions = new long[shardCount];
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (cursor == null) {
+                    current[shard] = true;
+                    indexSearchers[shard] = searcherManagers.get(shard).acquire();
+                } else {
+                    indexSearchers[shard] = lifetimeManagers.get(shard).acquire(cursor.getSearcherVersions()[shard]);
+                    if (indexSearchers[shard] == null) {
+                        NoobleApplication.log.info("Searcher of shard {} expired, cursor of query is rejected: {}",
+                                shard, queryString);
+                        throw new SearchCursorExpiredException("Search cursor expired: " + queryString);
+                    }
+                }
+                // searcher is recorded to find next pages on the same reader
+                searcherVersions[shard] = lifetimeManagers.get(shard).record(indexSearchers[shard]);
+            }
+            LatencyMetrics.SEARCH_ACQUIRE.recordSince(startTime);
+            startTime = System.nanoTime();
+            // one extra hit shows if there is next page
+            TopDocs topDocs = TopDocs.merge(count + 1, searchShards(indexSearchers, query, cursor, count + 1));
+            LatencyMetrics.SEARCH_SCORE.recordSince(startTime);
+            NoobleApplication.log.info("Docs found: {}", topDocs.totalHits);
+            ScoreDoc[] hits = topDocs.scoreDocs;
+            int pageSize = Math.min(count, hits.length);
+            String nextCursor = hits.length > count
+                    ? new SearchCursor(searcherVersions, hits[count - 1]).encode()
+                    : null;
+            startTime = System.nanoTime();
+            String[] fragments = getFragments(indexSearchers, query, hits, pageSize);
+            LatencyMetrics.SEARCH_HIGHLIGHT.recordSince(startTime);
+            startTime = System.nanoTime();
+            List<SearchDocument> documents = new ArrayList<>();
+            for (int i = 0; i < pageSize; i++) {
+                documents.add(getSearchDocument(indexSearchers[hits[i].shardIndex], hits[i].doc, fragments[i]));
+            }
+            LatencyMetrics.SEARCH_LOAD.recordSince(startTime);
+            return new SearchPage(queryString, topDocs.totalHits, documents, nextCursor, 0);
+        } finally {
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (indexSearchers[shard] == null) {
+                    continue;
+                }
+                if (current[shard]) {
+                    searcherManagers.get(shard).release(indexSearchers[shard]);
+                } else {
+                    lifetimeManagers.get(shard).release(indexSearchers[shard]);
+                }
+            }
+        }
     }
 
     /**
-     * Retrieves of most scored fragments in contents and put them together using specified
-     * separator. Number of fragments and separator defined in lucene.properties
-     * @param id Found document id
-     * @return contents fragment
-     * @throws IOException
+     * Searches top hits of every shard, the calling thread searches the first shard
+     * @return hits of every shard in order of the shards
      */
-    public String getFragment(int id) throws IOException {
-        Document document = indexSearcher.doc(id);
-        String text = document.get(LuceneConstants.CONTENTS);
-        if (text == null) {
-            NoobleApplication.log.error("Fragment is null! for doc: {}", document.get(LuceneConstants.SOURCE_NAME));
-            return "";
-        }
-        Fields fields = directoryReader.getTermVectors(id);
-        TokenStream tokenStream = TokenSources.getTermVectorTokenStreamOrNull(LuceneConstants.CONTENTS,
-                fields, highlighter.getMaxDocCharsToAnalyze() - 1);
+    private TopDocs[] searchShards(IndexSearcher[] indexSearchers, Query query, SearchCursor cursor, int count)
+            throws IOException {
+        TopDocs[] shardHits = new TopDocs[indexSearchers.length];
+        List<CompletableFuture<TopDocs>> futures = new ArrayList<>();
+        for (int shard = 1; shard < indexSearchers.length; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return searchShard(indexSearchers[current], query, cursor, current, count);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, shardExecutor));
+        }
+        shardHits[0] = searchShard(indexSearchers[0], query, cursor, 0, count);
         try {
-            return highlighter.getBestFragments(tokenStream, text,
-                    luceneProperties.getSearch().getMaxFragments(),
-                    luceneProperties.getSearch().getFragmentSeparator());
-        } catch (InvalidTokenOffsetsException e) {
-            NoobleApplication.log.error("Invalid Token Offsets for doc: {}", document.get(LuceneConstants.SOURCE_NAME));
+            for (int shard = 1; shard < indexSearchers.length; shard++) {
+                shardHits[shard] = futures.get(shard - 1).join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
         }
-        return "";
+        return shardHits;
     }
 
-    /**
-     * Forms new {@link SearchDocument}
-     * @param id found Lucene document id
-     * @return formed {@link SearchDocument}
-     * @throws IOException
-     */
-    public SearchDocument getSearchDocument(int id) throws IOException {
-        Document document = indexSearcher.doc(id);
-        String title = document.get(LuceneConstants.SOURCE_TITLE);
-        String fragment = getFragment(id);
-        String path = document.get(LuceneConstants.SOURCE_PATH);
-        return new SearchDocument(title, fragment, path);
+    private static TopDocs searchShard(IndexSearcher indexSearcher, Query query, SearchCursor cursor, int shard,
+                                       int count) throws IOException {
+        return cursor == null
+                ? indexSearcher.search(query, count)
+                : indexSearcher.searchAfter(
+                        cursor.getAfter(shard, indexSearcher.getIndexReader().maxDoc()), query, count);
     }
 
     /**
-     * Returns relevant sorted collection of found documents
-     * @return collection of found documents
-     * @throws IOException
+     * Highlights the page hits by the searchers of their shards
+     * @return contents fragments in the order of hits
      */
-    public Collection<SearchDocument> getSearchDocs() throws IOException {
-        NoobleApplication.log.info("Docs found: {}", getTotalHits());
-        Collection<SearchDocument> documents = new ArrayList<>();
-        for (ScoreDoc hit : hits) {
-            documents.add(getSearchDocument(hit.doc));
+    private String[] getFragments(IndexSearcher[] indexSearchers, Query query, ScoreDoc[] hits, int pageSize)
+            throws IOException {
+        String[] fragments = new String[pageSize];
+        for (int shard = 0; shard < indexSearchers.length; shard++) {
+            List<Integer> positions = new ArrayList<>();
+            for (int i = 0; i < pageSize; i++) {
+                if (hits[i].shardIndex == shard) {
+                    positions.add(i);
+                }
+            }
+            if (positions.isEmpty()) {
+                continue;
+            }
+            int[] ids = new int[positions.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = hits[positions.get(i)].doc;
+            }
+            String[] shardFragments = fragmentHighlighter.getFragments(indexSearchers[shard], query, ids);
+            for (int i = 0; i < ids.length; i++) {
+                fragments[positions.get(i)] = shardFragments[i];
+            }
         }
-        return documents;
+        return fragments;
     }
 
     /**
-     * @return Total count of found documents
+     * Forms new {@link SearchDocument}
+     * @param indexSearcher acquired searcher the document was found with
+     * @param id found Lucene document id
+     * @param fragment highlighted contents fragment
+     * @return formed {@link SearchDocument}
+     * @throws IOException
      */
-    public int getTotalHits() {
-        return collector.getTotalHits();
+    private SearchDocument getSearchDocument(IndexSearcher indexSearcher, int id, String fragment)
+            throws IOException {
+        Document document = indexSearcher.doc(id, RESULT_FIELDS);
+        String title = document.get(LuceneConstants.SOURCE_TITLE);
+        String path = document.get(LuceneConstants.SOURCE_PATH);
+        return new SearchDocument(title, fragment, path);
     }
 }
@@ -0,0 +1,94 @@
+package com.ghost.lucene.search;
+
+import com.ghost.NoobleApplication;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Representative queries run on a new searcher before it is published to request threads: the most
+ * recently sent queries and fixed queries of a file, which warm up a searcher opened after restart.
+ * Recent queries are kept in LRU order, the methods are synchronized.
+ */
+public class WarmUpQueries {
+
+    private final int maxQueries;
+    private final List<String> fileQueries;
+    private final LinkedHashMap<String, Boolean> recentQueries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxQueries max number of queries run by warm up, 0 disables warm up
+     * @param fileQueries fixed queries, run after the recent ones
+     */
+    public WarmUpQueries(int maxQueries, List<String> fileQueries) {
+        this.maxQueries = maxQueries;
+        this.fileQueries = fileQueries;
+    }
+
+    /**
+     * @param file of queries, one per line, blank lines and lines starting with # are skipped.
+     *             Null or missing file adds no queries
+     * @param maxQueries max number of queries run by warm up, 0 disables warm up
+     * @return warm up queries of the file
+     */
+    public static WarmUpQueries load(Path file, int maxQueries) {
+        List<String> fileQueries = new ArrayList<>();
+        if (file != null && Files.exists(file)) {
+            try {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        fileQueries.add(line);
+                    }
+                }
+                NoobleApplication.log.info("Warm up queries loaded: {} from {}", fileQueries.size(), file);
+            } catch (IOException e) {
+                NoobleApplication.log.error("Error reading warm up queries: {}", file, e);
+            }
+        }
+        return new WarmUpQueries(maxQueries, fileQueries);
+    }
+
+    /**
+     * @param query sent by a user, the least recent query is dropped over max queries
+     */
+    public synchronized void add(String query) {
+        if (maxQueries <= 0) {
+            return;
+        }
+        recentQueries.put(query, Boolean.TRUE);
+        if (recentQueries.size() > maxQueries) {
+            Iterator<String> eldest = recentQueries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return up to max queries, the most recent first, then the file queries
+     */
+    public synchronized List<String> getQueries() {
+        if (maxQueries <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> recent = new ArrayList<>(recentQueries.keySet());
+        Collections.reverse(recent);
+        Set<String> queries = new LinkedHashSet<>(recent);
+        for (String query : fileQueries) {
+            if (queries.size() >= maxQueries) {
+                break;
+            }
+            queries.add(query);
+        }
+        return new ArrayList<>(queries);
+    }
+}
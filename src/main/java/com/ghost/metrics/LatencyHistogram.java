@@ -0,0 +1,92 @@
+package com.ghost.metrics;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of durations with power of two buckets from 1 microsecond to about 68 seconds,
+ * so recording is a few increments without allocation. Longer durations are counted by the last bucket.
+ * Written in Prometheus text format as cumulative buckets in seconds.
+ */
+public class LatencyHistogram {
+
+    // upper bound of the first bucket is 2^10 ns (about 1 microsecond), of the last one 2^36 ns (about 68 seconds)
+    private static final int MIN_BIT = 10;
+    private static final int MAX_BIT = 36;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final String help;
+    private final LongAdder[] buckets = new LongAdder[MAX_BIT - MIN_BIT + 2];
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param name metric name, in seconds by Prometheus conventions
+     * @param help description of the measured stage
+     */
+    public LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param nanos duration of the stage
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        // buckets hold durations up to 2^bit ns
+        int bit = 64 - Long.numberOfLeadingZeros(Math.max(0, nanos - 1));
+        buckets[Math.min(Math.max(bit, MIN_BIT), MAX_BIT + 1) - MIN_BIT].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} the stage started at
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return number of recorded durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return total of recorded durations in ns
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Writes cumulative buckets, sum and count. Concurrent records may make count and sum slightly inconsistent
+     */
+    public void write(PrintWriter writer) {
+        writer.println("# HELP " + name + " " + help);
+        writer.println("# TYPE " + name + " histogram");
+        long count = 0;
+        for (int i = 0; i < buckets.length - 1; i++) {
+            count += buckets[i].sum();
+            writer.println(name + "_bucket{le=\"" + (1L << (MIN_BIT + i)) / NANOS_PER_SECOND + "\"} " + count);
+        }
+        count += buckets[buckets.length - 1].sum();
+        writer.println(name + "_bucket{le=\"+Inf\"} " + count);
+        writer.println(name + "_sum " + getSum() / NANOS_PER_SECOND);
+        writer.println(name + "_count " + count);
+    }
+}
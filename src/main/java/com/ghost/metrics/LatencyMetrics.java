@@ -0,0 +1,56 @@
+package com.ghost.metrics;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Latency histograms of the search and crawl stages. Shared by all the searchers, crawls and fetchers
+ * of the application, so the stages are recorded where they run without passing a registry around.
+ */
+public final class LatencyMetrics {
+
+    public static final LatencyHistogram SEARCH = new LatencyHistogram("nooble_search_seconds",
+            "Search of one page by the search service, including cache hits");
+    public static final LatencyHistogram SEARCH_PARSE = new LatencyHistogram("nooble_search_parse_seconds",
+            "Query parsing");
+    public static final LatencyHistogram SEARCH_ACQUIRE = new LatencyHistogram("nooble_search_acquire_seconds",
+            "Acquiring searchers of all the shards");
+    public static final LatencyHistogram SEARCH_SCORE = new LatencyHistogram("nooble_search_score_seconds",
+            "Scoring hits of all the shards and merging top hits");
+    public static final LatencyHistogram SEARCH_LOAD = new LatencyHistogram("nooble_search_load_seconds",
+            "Loading stored fields of the page hits");
+    public static final LatencyHistogram SEARCH_HIGHLIGHT = new LatencyHistogram("nooble_search_highlight_seconds",
+            "Highlighting fragments of the page hits");
+
+    public static final LatencyHistogram CRAWL_RESPONSE = new LatencyHistogram("nooble_crawl_response_seconds",
+            "Fetch from request start to response headers: connection lease, DNS, connect and server time");
+    public static final LatencyHistogram CRAWL_DOWNLOAD = new LatencyHistogram("nooble_crawl_download_seconds",
+            "Fetch of the response body and its decompression, whole request for the blocking fetcher");
+    public static final LatencyHistogram CRAWL_PARSE = new LatencyHistogram("nooble_crawl_parse_seconds",
+            "Parsing html, text and links of a modified page");
+    public static final LatencyHistogram CRAWL_ANALYZE = new LatencyHistogram("nooble_crawl_analyze_seconds",
+            "Content hash and building of the Lucene document");
+    public static final LatencyHistogram CRAWL_ADD_DOCUMENT = new LatencyHistogram(
+            "nooble_crawl_add_document_seconds", "Index writer update: analysis, inversion and buffering");
+
+    private static final List<LatencyHistogram> HISTOGRAMS = Collections.unmodifiableList(Arrays.asList(
+            SEARCH, SEARCH_PARSE, SEARCH_ACQUIRE, SEARCH_SCORE, SEARCH_LOAD, SEARCH_HIGHLIGHT,
+            CRAWL_RESPONSE, CRAWL_DOWNLOAD, CRAWL_PARSE, CRAWL_ANALYZE, CRAWL_ADD_DOCUMENT));
+
+    private LatencyMetrics() {}
+
+    public static List<LatencyHistogram> getHistograms() {
+        return HISTOGRAMS;
+    }
+
+    /**
+     * Writes all the histograms in Prometheus text format
+     */
+    public static void write(PrintWriter writer) {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.write(writer);
+        }
+    }
+}
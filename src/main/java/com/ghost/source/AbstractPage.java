@@ -23,6 +23,17 @@ public abstract class AbstractPage {
         this.url = url;
     }
 
+    /**
+     * Loads the page by the fetcher, waits for the response
+     * @param fetcher to load the page with
+     * @return successful response
+     * @throws IOException if the page could not be loaded
+     * @throws FetchStatusException if response status is not 2xx
+     */
+    protected FetchResponse fetch(PageFetcher fetcher) throws IOException {
+        return fetcher.load(url);
+    }
+
     /**
      * Extracts plain text from the source
      * @return
@@ -0,0 +1,304 @@
+package com.ghost.source;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.metrics.LatencyMetrics;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Non-blocking fetcher based on Apache HttpAsyncClient. A few IO reactor threads serve all the requests,
+ * connections are pooled per host and kept alive between requests, responses are requested and decoded
+ * with gzip or deflate. Body is read from the connection into one buffer and its size is bounded.
+ * Number of requests in flight is bounded, {@link #fetch(URL)} waits for a free slot.
+ */
+public class AsyncPageFetcher implements PageFetcher {
+
+    private final CloseableHttpAsyncClient client;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int maxBodySize;
+    private final int maxConnectionsPerHost;
+
+    /**
+     * @param properties index params: connection pool sizes, max requests in flight, timeout and user agent
+     */
+    public AsyncPageFetcher(LuceneProperties.Index properties) {
+        this(properties.getFetchConnections(), properties.getFetchConnectionsPerHost(), properties.getFetchInFlight(),
+                properties.getFetchTimeout(), properties.getMaxBodySize(), properties.getUserAgent());
+    }
+
+    /**
+     * @param maxConnections max number of open connections
+     * @param maxConnectionsPerHost max number of open connections to one host
+     * @param maxInFlight max number of started and not completed requests
+     * @param timeout connect, read and pool wait timeout in ms
+     * @param maxBodySize max size of loaded and decompressed body in bytes, larger pages fail
+     * @param userAgent User-Agent header value
+     */
+    public AsyncPageFetcher(int maxConnections, int maxConnectionsPerHost, int maxInFlight, int timeout,
+                            int maxBodySize, String userAgent) {
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSoTimeout(timeout)
+                .setSoKeepAlive(true)
+                .build();
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("Can not start HTTP IO reactor", e);
+        }
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .build();
+        List<Header> headers = Collections.singletonList(new BasicHeader("Accept-Encoding", "gzip, deflate"));
+        client = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setDefaultHeaders(headers)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .setUserAgent(userAgent)
+                .build();
+        client.start();
+        this.maxInFlight = maxInFlight;
+        this.maxBodySize = maxBodySize;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(URL url, Map<String, String> headers) {
+        return execute(url, false, headers);
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> head(URL url) {
+        return execute(url, true, Collections.emptyMap());
+    }
+
+    private CompletableFuture<FetchResponse> execute(URL url, boolean head, Map<String, String> headers) {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        HttpRequestBase request;
+        try {
+            URI uri = url.toURI();
+            request = head ? new HttpHead(uri) : new HttpGet(uri);
+            headers.forEach(request::setHeader);
+        } catch (Exception e) {
+            future.completeExceptionally(new IOException("Bad URL " + url, e));
+            return future;
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new InterruptedIOException("Interrupted waiting for a request slot"));
+            return future;
+        }
+        send(url, request, future, maxConnectionsPerHost);
+        return future;
+    }
+
+    /**
+     * Sends the request, the slot is released when the request is completed
+     * @param retries number of times to resend the request if a kept alive connection was closed or reset
+     *                by the server, every pooled connection of the host may be stale
+     */
+    private void send(URL url, HttpRequestBase request, CompletableFuture<FetchResponse> future, int retries) {
+        HttpClientContext context = HttpClientContext.create();
+        try {
+            client.execute(HttpAsyncMethods.create(request), new BodyConsumer(url, maxBodySize), context,
+                    new FutureCallback<FetchResponse>() {
+                @Override
+                public void completed(FetchResponse response) {
+                    inFlight.release();
+                    future.complete(response);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    if (retries > 0 && isStaleConnection(e)) {
+                        request.reset();
+                        send(url, request, future, retries - 1);
+                        return;
+                    }
+                    inFlight.release();
+                    future.completeExceptionally(e instanceof IOException ? e : new IOException(e));
+                }
+
+                @Override
+                public void cancelled() {
+                    inFlight.release();
+                    future.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            future.completeExceptionally(new IOException("Request is not started: " + url, e));
+        }
+    }
+
+    /**
+     * @return true if the request failed because a kept alive connection was closed or reset by the server,
+     * GET and HEAD requests are safe to resend
+     */
+    private static boolean isStaleConnection(Exception e) {
+        return e instanceof ConnectionClosedException
+                || e instanceof SocketException && !(e instanceof ConnectException);
+    }
+
+    /**
+     * @return number of started and not completed requests
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * @return connection pool state: leased, pending, available (kept alive) and max connections
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    /**
+     * Reads the body from the connection straight into one heap buffer, pre-sized by Content-Length
+     * and bounded by max body size, then decompresses it if needed.
+     * Records time to the response headers and time of the body, see {@link LatencyMetrics}.
+     */
+    private static class BodyConsumer extends AbstractAsyncResponseConsumer<FetchResponse> {
+
+        private final URL url;
+        private final int maxBodySize;
+        private final long startTime = System.nanoTime();
+        private long responseTime;
+        private HttpResponse response;
+        private ByteBuffer body;
+
+        BodyConsumer(URL url, int maxBodySize) {
+            this.url = url;
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            this.response = response;
+            responseTime = System.nanoTime();
+            LatencyMetrics.CRAWL_RESPONSE.record(responseTime - startTime);
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            long length = entity.getContentLength();
+            ConnectionUtils.checkBodySize(length, maxBodySize);
+            body = ConnectionUtils.allocate(length, maxBodySize);
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            while (true) {
+                if (!body.hasRemaining()) {
+                    body = ConnectionUtils.grow(body, maxBodySize);
+                }
+                if (decoder.read(body) <= 0) {
+                    break;
+                }
+            }
+            ConnectionUtils.checkBodySize(body.position(), maxBodySize);
+        }
+
+        @Override
+        protected FetchResponse buildResult(HttpContext context) throws IOException {
+            Map<String, String> headers = new HashMap<>();
+            for (Header header : response.getAllHeaders()) {
+                headers.putIfAbsent(header.getName().toLowerCase(Locale.ROOT), header.getValue());
+            }
+            ByteBuffer content = body == null ? ByteBuffer.allocate(0) : (ByteBuffer) body.flip();
+            List<URI> redirects = HttpClientContext.adapt(context).getRedirectLocations();
+            URL finalUrl = redirects == null || redirects.isEmpty() ? url : redirects.get(redirects.size() - 1).toURL();
+            FetchResponse fetchResponse = new FetchResponse(finalUrl, response.getStatusLine().getStatusCode(),
+                    headers, decompress(content, headers.get("content-encoding")));
+            LatencyMetrics.CRAWL_DOWNLOAD.recordSince(responseTime);
+            return fetchResponse;
+        }
+
+        @Override
+        protected void releaseResources() {
+            response = null;
+            body = null;
+        }
+
+        /**
+         * Decompresses gzip or deflate body, other encodings are returned as is
+         */
+        private ByteBuffer decompress(ByteBuffer content, String encoding) throws IOException {
+            if (encoding == null || !content.hasRemaining()) {
+                return content;
+            }
+            InputStream compressed = new ByteArrayInputStream(content.array(), content.arrayOffset(), content.limit());
+            switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+                case "gzip":
+                case "x-gzip":
+                    try (InputStream is = new GZIPInputStream(compressed)) {
+                        return ConnectionUtils.read(is, -1, maxBodySize);
+                    }
+                case "deflate":
+                    // deflate is zlib wrapped by spec, but some servers send raw deflate stream
+                    boolean zlib = content.limit() > 1
+                            && ((content.get(0) & 0xff) << 8 | (content.get(1) & 0xff)) % 31 == 0;
+                    try (InputStream is = new InflaterInputStream(compressed, new Inflater(!zlib))) {
+                        return ConnectionUtils.read(is, -1, maxBodySize);
+                    }
+            }
+            return content;
+        }
+    }
+}
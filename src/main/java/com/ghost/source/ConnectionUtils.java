@@ -1,41 +1,49 @@
 package com.ghost.source;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ConnectionUtils {
 
     public static final int BUFFER_SIZE = 8 * 1024;
 
+    // default max size of loaded body in bytes
+    public static final int MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+    // number of first body bytes searched for the meta charset of html
+    private static final int META_CHARSET_SCAN = 1024;
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?\\s*([a-zA-Z0-9_:.+-]+)", Pattern.CASE_INSENSITIVE);
+
     /**
-     * Detects is current url is valid (exist and reachable)
-     * @param url to source
+     * Loads the content of the specified source, not larger than {@link #MAX_BODY_SIZE}
+     * @param pathToSource as URL
+     * @return contents of the source decoded with the detected charset
+     * @throws IOException
      */
-    public static boolean isAllowed(URL url) throws IOException {
-
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("HEAD");
-        int responseCode = connection.getResponseCode();
-        return (responseCode == 200);
+    public static String load(String pathToSource) throws IOException {
+        return load(pathToSource, MAX_BODY_SIZE);
     }
 
     /**
      * Loads the content of the specified source
      * @param pathToSource as URL
-     * @return contents of the source
-     * @throws IOException
+     * @param maxBodySize max size of the content in bytes
+     * @return contents of the source decoded with the detected charset, see {@link #decode(ByteBuffer, String)}
+     * @throws IOException if the source could not be loaded or it is larger than maxBodySize
      */
-    public static String load(String pathToSource) throws IOException {
+    public static String load(String pathToSource, int maxBodySize) throws IOException {
 
-        URL url = new URL(pathToSource);
-        try(InputStream is = new BufferedInputStream(url.openConnection().getInputStream(), BUFFER_SIZE);
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            int length;
-            while((length = is.read()) >= 0) {
-                byteArrayOutputStream.write(length);
-            }
-            return byteArrayOutputStream.toString();
+        URLConnection connection = new URL(pathToSource).openConnection();
+        try (InputStream is = connection.getInputStream()) {
+            ByteBuffer body = read(is, connection.getContentLengthLong(), maxBodySize);
+            return decode(body, connection.getContentType());
         }
     }
 
@@ -46,15 +54,148 @@ public class ConnectionUtils {
      * @throws IOException
      */
     public static String loadText(String pathToSource) throws IOException {
+        return load(pathToSource);
+    }
 
-        StringBuilder content = new StringBuilder();
-        URL url = new URL(pathToSource);
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()))) {
-            String row;
-            while ((row = reader.readLine()) != null) {
-                content.append(row).append("\n");
+    /**
+     * Reads the whole stream into one buffer by bulk reads straight into the buffer array.
+     * Buffer is pre-sized by the expected length, so a body of known length is read without copying.
+     * @param inputStream to read, not closed
+     * @param expectedLength content length, negative if unknown
+     * @param maxBodySize max number of bytes to read
+     * @return buffer ready to be read from
+     * @throws IOException if the stream is longer than maxBodySize
+     */
+    public static ByteBuffer read(InputStream inputStream, long expectedLength, int maxBodySize) throws IOException {
+        checkBodySize(expectedLength, maxBodySize);
+        // one spare byte to see the end of the stream of expected length without growing the buffer
+        ByteBuffer buffer = allocate(expectedLength < 0 ? expectedLength : expectedLength + 1, maxBodySize);
+        int length;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer = grow(buffer, maxBodySize);
+            }
+            length = inputStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (length < 0) {
+                break;
             }
+            buffer.position(buffer.position() + length);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param expectedLength content length, negative if unknown
+     * @param maxBodySize max body size
+     * @return empty heap buffer for the body
+     */
+    public static ByteBuffer allocate(long expectedLength, int maxBodySize) {
+        long capacity = expectedLength < 0 ? BUFFER_SIZE : Math.max(1, expectedLength);
+        return ByteBuffer.allocate((int) Math.min(capacity, (long) maxBodySize + 1));
+    }
+
+    /**
+     * Doubles the full buffer
+     * @param buffer full buffer in write mode
+     * @param maxBodySize max body size
+     * @return larger buffer with the content of the given one, in write mode
+     * @throws IOException if the buffer is already over maxBodySize
+     */
+    public static ByteBuffer grow(ByteBuffer buffer, int maxBodySize) throws IOException {
+        checkBodySize(buffer.position(), maxBodySize);
+        int capacity = (int) Math.min((long) buffer.capacity() * 2, (long) maxBodySize + 1);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /**
+     * @throws IOException if the size is over max
+     */
+    public static void checkBodySize(long size, int maxBodySize) throws IOException {
+        if (size > maxBodySize) {
+            throw new IOException("Body is larger than " + maxBodySize + " bytes");
+        }
+    }
+
+    /**
+     * Decodes the body into a string in one step. Charset is taken from byte order mark, then from
+     * content type, then from html meta tag, UTF-8 is used if none found.
+     * @param body bytes to decode, buffer position is not changed
+     * @param contentType value of the Content-Type header, may be null
+     * @return decoded text without byte order mark
+     */
+    public static String decode(ByteBuffer body, String contentType) {
+        ByteBuffer bytes = body.duplicate();
+        Charset charset = readByteOrderMark(bytes);
+        if (charset == null) {
+            charset = getContentTypeCharset(contentType);
+        }
+        if (charset == null) {
+            charset = getMetaCharset(bytes);
+        }
+        if (charset == null) {
+            charset = StandardCharsets.UTF_8;
+        }
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), charset);
+        }
+        return charset.decode(bytes).toString();
+    }
+
+    /**
+     * Skips byte order mark if the buffer starts with it
+     * @return charset of the mark or null if there is no mark
+     */
+    private static Charset readByteOrderMark(ByteBuffer bytes) {
+        int start = bytes.position();
+        if (bytes.remaining() >= 3 && (bytes.get(start) & 0xff) == 0xef && (bytes.get(start + 1) & 0xff) == 0xbb
+                && (bytes.get(start + 2) & 0xff) == 0xbf) {
+            bytes.position(start + 3);
+            return StandardCharsets.UTF_8;
+        }
+        if (bytes.remaining() >= 2) {
+            int mark = (bytes.get(start) & 0xff) << 8 | (bytes.get(start + 1) & 0xff);
+            if (mark == 0xfeff || mark == 0xfffe) {
+                bytes.position(start + 2);
+                return mark == 0xfeff ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param contentType value of the Content-Type header, may be null
+     * @return charset parameter of the content type or null if absent or not supported
+     */
+    public static Charset getContentTypeCharset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String[] pair = param.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                return forName(pair[1].trim().replace("\"", "").replace("'", ""));
+            }
+        }
+        return null;
+    }
+
+    private static Charset getMetaCharset(ByteBuffer bytes) {
+        int length = Math.min(bytes.remaining(), META_CHARSET_SCAN);
+        byte[] head = new byte[length];
+        bytes.duplicate().get(head);
+        Matcher matcher = META_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+        return matcher.find() ? forName(matcher.group(1)) : null;
+    }
+
+    private static Charset forName(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-        return content.toString();
     }
 }
@@ -0,0 +1,117 @@
+package com.ghost.source;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fetched page: final url after redirects, response status, headers and decoded body bytes
+ */
+public class FetchResponse {
+
+    private final URL url;
+    private final int status;
+    private final Map<String, String> headers;
+    private final ByteBuffer body;
+
+    /**
+     * @param url final url of the page
+     * @param status HTTP status code
+     * @param headers response headers, names are lower case
+     * @param body decompressed body ready to be read from, empty if there is no body
+     */
+    public FetchResponse(URL url, int status, Map<String, String> headers, ByteBuffer body) {
+        this.url = url;
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * @return true if the page is not changed since the version given by conditional request headers
+     */
+    public boolean isNotModified() {
+        return status == 304;
+    }
+
+    /**
+     * @param name of the header, case insensitive
+     * @return first value of the header or null
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getContentType() {
+        return getHeader("content-type");
+    }
+
+    /**
+     * @return entity tag of the page version to send in If-None-Match header, null if absent
+     */
+    public String getETag() {
+        return getHeader("etag");
+    }
+
+    /**
+     * @return modification date of the page to send in If-Modified-Since header, null if absent
+     */
+    public String getLastModified() {
+        return getHeader("last-modified");
+    }
+
+    /**
+     * @return time in ms of the Retry-After header, given in seconds or as a date, -1 if absent or malformed
+     */
+    public long getRetryAfter() {
+        String retryAfter = getHeader("retry-after");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ex) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return read only view of the body bytes
+     */
+    public ByteBuffer getBody() {
+        return body.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return body decoded with the charset of byte order mark, content type or html meta tag, UTF-8 by default
+     */
+    public String getText() {
+        return ConnectionUtils.decode(body, getContentType());
+    }
+}
@@ -0,0 +1,44 @@
+package com.ghost.source;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Page responded with not successful HTTP status
+ */
+public class FetchStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final long retryAfter;
+
+    /**
+     * @param url of the page
+     * @param status HTTP status of the response
+     * @param retryAfter time in ms the server asked to wait before the next request, -1 if not specified
+     */
+    public FetchStatusException(URL url, int status, long retryAfter) {
+        super("HTTP status " + status + " of " + url);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the server is overloaded or limits the request rate (429 or 503)
+     */
+    public boolean isThrottled() {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * @return time in ms to wait before the next request to the host, -1 if not specified
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,70 +1,215 @@
 package com.ghost.source;
 
 import com.ghost.NoobleApplication;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
+import org.jsoup.helper.StringUtil;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
 
+/**
+ * Page loaded by {@link PageFetcher} and parsed by Jsoup. Text, title, links and metadata are extracted
+ * in a single pass over the document right after parsing, then the document is released, so the page holds
+ * only the extracted values.
+ */
 public class JsoupPage extends AbstractPage {
 
-    private Document document;
+    // text buffer is reused by the thread for the next page unless it grew larger than this
+    private static final int MAX_REUSED_BUFFER = 1024 * 1024;
+    private static final ThreadLocal<StringBuilder> textBuffer = ThreadLocal.withInitial(StringBuilder::new);
 
-    public JsoupPage(URL url) {
+    private String text;
+    private String title;
+    private Collection<URL> links;
+    private Map<String, String> metadata;
+
+    /**
+     * Loads and parses the page, could be slow!
+     * @param url of the page
+     * @param fetcher to load the page with
+     * @throws IOException if the page could not be loaded or it is not html
+     */
+    public JsoupPage(URL url, PageFetcher fetcher) throws IOException {
         super(url);
-        getContent();
+        parse(fetch(fetcher));
     }
 
-    protected void getContent() {
-        try {
-            Connection connection = Jsoup.connect(url.toString());
-            connection.ignoreHttpErrors(true);
-            document = connection.get();
-        } catch (MalformedURLException e) {
-            NoobleApplication.log.error("Bad URL {}", url.toString());
-        } catch (SocketTimeoutException e) {
-            NoobleApplication.log.error("Connection time is out!");
-        } catch (IOException e) {
-            NoobleApplication.log.error("Error getting source {}, exception: {}", url.toString(), e.getMessage());
+    /**
+     * Parses already loaded page
+     * @param url of the page
+     * @param response successful response of the page
+     * @throws IOException if the page is not html
+     */
+    public JsoupPage(URL url, FetchResponse response) throws IOException {
+        super(url);
+        parse(response);
+    }
+
+    /**
+     * Creates page from already loaded html
+     * @param url of the page, base for relative links
+     * @param html source of the page
+     */
+    public JsoupPage(URL url, String html) {
+        super(url);
+        extract(Jsoup.parse(html, url.toString()));
+    }
+
+    private void parse(FetchResponse response) throws IOException {
+        String contentType = response.getContentType();
+        if (contentType != null && !isHtml(contentType)) {
+            throw new IOException("Unsupported content type " + contentType + " of " + url);
+        }
+        extract(Jsoup.parse(response.getText(), response.getUrl().toString()));
+    }
+
+    private static boolean isHtml(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.startsWith("application/xhtml+xml")
+                || type.startsWith("application/xml");
+    }
+
+    /**
+     * Walks the document once collecting text, title, links and metadata
+     * @param document parsed page
+     */
+    private void extract(Document document) {
+        StringBuilder buffer = textBuffer.get();
+        buffer.setLength(0);
+        ExtractingVisitor visitor = new ExtractingVisitor(buffer);
+        new NodeTraversor(visitor).traverse(document);
+        text = buffer.toString().trim();
+        title = visitor.title == null ? "" : visitor.title;
+        links = Collections.unmodifiableSet(visitor.links);
+        metadata = Collections.unmodifiableMap(visitor.metadata);
+        if (buffer.capacity() > MAX_REUSED_BUFFER) {
+            textBuffer.remove();
         }
     }
 
     @Override
     public String getText() {
-        return Jsoup.parse(document.toString()).text();
+        return text;
     }
 
     @Override
     public String getTitle() {
-        return document.title();
+        return title;
     }
 
     @Override
     public Collection<URL> getLinks() {
-        Elements linkElements = document.select("a[href]");
-        Set<String> links = linkElements
-                .stream()
-                .map(link -> link.attr("abs:href"))
-                .collect(Collectors.toSet());
-        Collection<URL> urls = new HashSet<>();
-        links
-                .stream()
-                .forEach(link -> {
-                    try {
-                        urls.add(new URL(link));
-                    } catch (MalformedURLException e) {
-                        NoobleApplication.log.error("Malformed link {}", link);
-                    }
-                });
-        return urls;
+        return links;
+    }
+
+    /**
+     * @return content of the named meta tags, names are lower case, e.g. description, keywords, robots
+     */
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Collects the same text as {@link Element#text()} of the whole document, the first title,
+     * absolute links of a[href] and content of meta[name]
+     */
+    private static class ExtractingVisitor implements NodeVisitor {
+
+        private final StringBuilder text;
+        private final Set<URL> links = new LinkedHashSet<>();
+        private final Map<String, String> metadata = new HashMap<>();
+        private String title;
+        private String baseString;
+        private URL baseUrl;
+
+        ExtractingVisitor(StringBuilder text) {
+            this.text = text;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode) {
+                appendText((TextNode) node);
+            } else if (node instanceof Element) {
+                Element element = (Element) node;
+                if (text.length() > 0 && (element.isBlock() || element.tagName().equals("br"))
+                        && !lastCharIsWhitespace()) {
+                    text.append(' ');
+                }
+                switch (element.tagName()) {
+                    case "a":
+                        addLink(element);
+                        break;
+                    case "title":
+                        if (title == null) {
+                            title = StringUtil.normaliseWhitespace(element.text()).trim();
+                        }
+                        break;
+                    case "meta":
+                        String name = element.attr("name");
+                        if (!name.isEmpty()) {
+                            metadata.putIfAbsent(name.toLowerCase(Locale.ROOT), element.attr("content"));
+                        }
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+        }
+
+        private void appendText(TextNode node) {
+            String wholeText = node.getWholeText();
+            if (preserveWhitespace(node.parent())) {
+                text.append(wholeText);
+            } else {
+                StringUtil.appendNormalisedWhitespace(text, wholeText, lastCharIsWhitespace());
+            }
+        }
+
+        private void addLink(Element element) {
+            if (!element.hasAttr("href")) {
+                return;
+            }
+            String href = element.attr("href");
+            try {
+                links.add(StringUtil.resolve(base(element.baseUri()), href));
+            } catch (MalformedURLException e) {
+                NoobleApplication.log.error("Malformed link {}", href);
+            }
+        }
+
+        /**
+         * Base URL is the same for all the links unless the page has base tag, so it is parsed once
+         */
+        private URL base(String baseUri) throws MalformedURLException {
+            if (!baseUri.equals(baseString)) {
+                baseUrl = new URL(baseUri);
+                baseString = baseUri;
+            }
+            return baseUrl;
+        }
+
+        private boolean preserveWhitespace(Node node) {
+            if (node instanceof Element) {
+                Element element = (Element) node;
+                return element.tag().preserveWhitespace()
+                        || element.parent() != null && element.parent().tag().preserveWhitespace();
+            }
+            return false;
+        }
+
+        private boolean lastCharIsWhitespace() {
+            return text.length() != 0 && text.charAt(text.length() - 1) == ' ';
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.ghost.source;
+
+import com.ghost.metrics.LatencyMetrics;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blocking fetcher, loads the page by Jsoup connection in the calling thread. Connections are not reused.
+ */
+public class JsoupPageFetcher implements PageFetcher {
+
+    private final int timeout;
+    private final int maxBodySize;
+    private final String userAgent;
+
+    /**
+     * @param timeout connect and read timeout in ms
+     * @param maxBodySize max size of loaded body in bytes, larger pages fail
+     * @param userAgent User-Agent header value
+     */
+    public JsoupPageFetcher(int timeout, int maxBodySize, String userAgent) {
+        this.timeout = timeout;
+        this.maxBodySize = maxBodySize;
+        this.userAgent = userAgent;
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(URL url, Map<String, String> requestHeaders) {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        try {
+            Connection connection = Jsoup.connect(url.toString())
+                    .timeout(timeout)
+                    .userAgent(userAgent)
+                    .ignoreHttpErrors(true)
+                    .ignoreContentType(true)
+                    .maxBodySize(maxBodySize + 1);
+            requestHeaders.forEach(connection::header);
+            long startTime = System.nanoTime();
+            // Jsoup reads the headers and the body at once
+            Connection.Response response = connection.execute();
+            LatencyMetrics.CRAWL_DOWNLOAD.recordSince(startTime);
+            Map<String, String> headers = new HashMap<>();
+            response.headers().forEach((name, value) -> headers.put(name.toLowerCase(Locale.ROOT), value));
+            byte[] body = response.bodyAsBytes();
+            // Jsoup truncates the body at max size, one more byte tells the body is larger
+            ConnectionUtils.checkBodySize(body.length, maxBodySize);
+            future.complete(new FetchResponse(response.url(), response.statusCode(), headers, ByteBuffer.wrap(body)));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Jsoup connection does not support HEAD method, so the request is sent by HttpURLConnection
+     */
+    @Override
+    public CompletableFuture<FetchResponse> head(URL url) {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        try {
+            URLConnection urlConnection = url.openConnection();
+            if (!(urlConnection instanceof HttpURLConnection)) {
+                throw new IOException("Not HTTP URL " + url);
+            }
+            HttpURLConnection connection = (HttpURLConnection) urlConnection;
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestProperty("User-Agent", userAgent);
+            int status = connection.getResponseCode();
+            Map<String, String> headers = new HashMap<>();
+            connection.getHeaderFields().forEach((name, values) -> {
+                if (name != null && !values.isEmpty()) {
+                    headers.put(name.toLowerCase(Locale.ROOT), values.get(0));
+                }
+            });
+            future.complete(new FetchResponse(connection.getURL(), status, headers, ByteBuffer.allocate(0)));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public void close() {
+    }
+}
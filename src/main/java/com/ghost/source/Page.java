@@ -26,6 +26,16 @@ public class Page extends AbstractPage {
         this.content = getContent();
     }
 
+    /**
+     * @param url of the page
+     * @param fetcher to load the page with
+     * @throws IOException if the page could not be loaded
+     */
+    public Page(URL url, PageFetcher fetcher) throws IOException {
+        super(url);
+        this.content = fetch(fetcher).getText();
+    }
+
     protected String getContent() throws IOException {
         return ConnectionUtils.loadText(url.toString());
     }
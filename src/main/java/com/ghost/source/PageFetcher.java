@@ -0,0 +1,95 @@
+package com.ghost.source;
+
+import com.ghost.lucene.LuceneProperties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads pages over HTTP for {@link AbstractPage} implementations. Implementations must be safe for concurrent use
+ * and are shared by all the crawl workers.
+ */
+public interface PageFetcher extends Closeable {
+
+    /**
+     * Starts GET request of the page, redirects are followed
+     * @param url of the page
+     * @return future response, completed exceptionally with IOException if the page could not be loaded
+     */
+    default CompletableFuture<FetchResponse> fetch(URL url) {
+        return fetch(url, Collections.emptyMap());
+    }
+
+    /**
+     * Starts GET request of the page with extra headers, conditional request headers for example
+     * @param url of the page
+     * @param headers to add to the request
+     * @return future response, completed exceptionally with IOException if the page could not be loaded
+     */
+    CompletableFuture<FetchResponse> fetch(URL url, Map<String, String> headers);
+
+    /**
+     * Starts HEAD request of the page
+     * @param url of the page
+     * @return future response without body
+     */
+    CompletableFuture<FetchResponse> head(URL url);
+
+    /**
+     * Loads the page, waits for the response
+     * @param url of the page
+     * @return successful response
+     * @throws IOException if the page could not be loaded
+     * @throws FetchStatusException if response status is not 2xx
+     */
+    default FetchResponse load(URL url) throws IOException {
+        return load(url, Collections.emptyMap());
+    }
+
+    /**
+     * Loads the page by conditional request, waits for the response
+     * @param url of the page
+     * @param headers to add to the request, If-None-Match and If-Modified-Since
+     * @return successful or not modified response
+     * @throws IOException if the page could not be loaded
+     * @throws FetchStatusException if response status is not 2xx or 304
+     */
+    default FetchResponse load(URL url, Map<String, String> headers) throws IOException {
+        FetchResponse response;
+        try {
+            response = fetch(url, headers).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted loading " + url);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        if (!response.isSuccessful() && !response.isNotModified()) {
+            throw new FetchStatusException(url, response.getStatus(), response.getRetryAfter());
+        }
+        return response;
+    }
+
+    /**
+     * Creates fetcher of the type specified in lucene.properties
+     * @param properties index params
+     * @return new fetcher, to be closed by the caller
+     */
+    static PageFetcher create(LuceneProperties.Index properties) {
+        switch (properties.getFetcher()) {
+            case JSOUP: return new JsoupPageFetcher(properties.getFetchTimeout(), properties.getMaxBodySize(),
+                    properties.getUserAgent());
+        }
+        return new AsyncPageFetcher(properties);
+    }
+
+    enum Type {
+        ASYNC, JSOUP
+    }
+}
@@ -0,0 +1,175 @@
+package com.ghost.source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed robots.txt rules of one host for the crawler user agent: allowed paths and crawl delay.
+ * The group of the longest user agent token found in the crawler user agent is used, "*" group otherwise.
+ * Of the matching Allow and Disallow rules the longest one wins, Allow wins a tie.
+ */
+public class RobotsRules {
+
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(Collections.emptyList(), 0, 0);
+
+    private final List<Rule> rules;
+    private final long crawlDelay;
+    private final long retryTime;
+
+    private RobotsRules(List<Rule> rules, long crawlDelay, long retryTime) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.retryTime = retryTime;
+    }
+
+    /**
+     * Rules of a host which robots.txt could not be loaded because of a server error: every page is disallowed
+     * @param retryTime time in ms robots.txt is loaded again, 0 if the host stays disallowed until the rules expire
+     * @return rules disallowing all the pages
+     */
+    public static RobotsRules disallowAll(long retryTime) {
+        return new RobotsRules(Collections.singletonList(new Rule("/", false)), 0, retryTime);
+    }
+
+    /**
+     * @param text content of robots.txt
+     * @param userAgent User-Agent header value of the crawler
+     * @return rules of the group matching the user agent
+     */
+    public static RobotsRules parse(String text, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<Rule> groupRules = new ArrayList<>();
+        List<Rule> selectedRules = null;
+        long groupDelay = 0;
+        long selectedDelay = 0;
+        int groupMatch = -1;
+        int selectedMatch = -1;
+        boolean agentLines = false;
+        for (String line : text.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (field.equals("user-agent")) {
+                if (!agentLines) {
+                    // a new group starts, the previous one is complete
+                    if (groupMatch > selectedMatch) {
+                        selectedRules = groupRules;
+                        selectedDelay = groupDelay;
+                        selectedMatch = groupMatch;
+                    }
+                    groupRules = new ArrayList<>();
+                    groupDelay = 0;
+                    groupMatch = -1;
+                    agentLines = true;
+                }
+                String token = value.toLowerCase(Locale.ROOT);
+                if (token.equals("*")) {
+                    groupMatch = Math.max(groupMatch, 0);
+                } else if (!token.isEmpty() && agent.contains(token)) {
+                    groupMatch = Math.max(groupMatch, token.length());
+                }
+                continue;
+            }
+            agentLines = false;
+            switch (field) {
+                case "allow":
+                case "disallow":
+                    if (!value.isEmpty()) {
+                        groupRules.add(new Rule(value, field.equals("allow")));
+                    }
+                    break;
+                case "crawl-delay":
+                    try {
+                        groupDelay = (long) (Double.parseDouble(value) * 1000);
+                    } catch (NumberFormatException e) {
+                        // ignore malformed delay
+                    }
+                    break;
+            }
+        }
+        if (groupMatch > selectedMatch) {
+            selectedRules = groupRules;
+            selectedDelay = groupDelay;
+        }
+        return selectedRules == null ? ALLOW_ALL : new RobotsRules(selectedRules, selectedDelay, 0);
+    }
+
+    /**
+     * @param path path and query of the url
+     * @return true if the crawler may load the path
+     */
+    public boolean isAllowed(String path) {
+        Rule match = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (match == null || rule.length() > match.length()
+                    || rule.length() == match.length() && rule.allow)) {
+                match = rule;
+            }
+        }
+        return match == null || match.allow;
+    }
+
+    /**
+     * @return true if the host is disallowed only until robots.txt is loaded again, see {@link #getRetryTime()}
+     */
+    public boolean isTemporary() {
+        return retryTime > 0;
+    }
+
+    /**
+     * @return time in ms robots.txt of the temporarily disallowed host is loaded again, 0 if the rules are final
+     */
+    public long getRetryTime() {
+        return retryTime;
+    }
+
+    /**
+     * @return min time in ms between requests to the host, 0 if not specified
+     */
+    public long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    /**
+     * Path prefix pattern, "*" matches any chars, "$" at the end anchors the pattern to the end of the path
+     */
+    private static class Rule {
+
+        private final String pattern;
+        private final Pattern regex;
+        private final boolean allow;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (regex.length() > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            this.regex = Pattern.compile(regex + (anchored ? "" : ".*"), Pattern.DOTALL);
+        }
+
+        boolean matches(String path) {
+            return regex.matcher(path).matches();
+        }
+
+        int length() {
+            return pattern.length();
+        }
+    }
+}
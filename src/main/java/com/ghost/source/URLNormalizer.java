@@ -0,0 +1,63 @@
+package com.ghost.source;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Brings URLs to one canonical form, so the same page reached by different links is recognized:
+ * fragment stripped, scheme and host lower-cased, default port removed, query params sorted, user info kept
+ */
+public class URLNormalizer {
+
+    private static final String QUERY_SEPARATOR = "&";
+
+    /**
+     * @param url to normalize
+     * @return canonical form of the url
+     * @throws MalformedURLException
+     */
+    public static URL normalize(URL url) throws MalformedURLException {
+        String protocol = url.getProtocol().toLowerCase(Locale.ROOT);
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        int port = url.getPort() == url.getDefaultPort() ? -1 : url.getPort();
+        String path = url.getPath().isEmpty() ? "/" : url.getPath();
+        String query = sortQuery(url.getQuery());
+        StringBuilder spec = new StringBuilder(protocol).append("://");
+        if (url.getUserInfo() != null) {
+            spec.append(url.getUserInfo()).append('@');
+        }
+        spec.append(host);
+        if (port >= 0) {
+            spec.append(':').append(port);
+        }
+        spec.append(path);
+        if (query != null) {
+            spec.append('?').append(query);
+        }
+        return new URL(spec.toString());
+    }
+
+    /**
+     * Normalizes given url or returns it as is if it can't be normalized
+     * @param url to normalize
+     * @return canonical form of the url
+     */
+    public static URL normalizeOrSelf(URL url) {
+        try {
+            return normalize(url);
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    private static String sortQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+        String[] params = query.split(QUERY_SEPARATOR);
+        Arrays.sort(params);
+        return String.join(QUERY_SEPARATOR, params);
+    }
+}
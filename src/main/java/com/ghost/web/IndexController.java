@@ -1,23 +1,25 @@
 package com.ghost.web;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import com.ghost.NoobleApplication;
+import com.ghost.json.View;
+import com.ghost.lucene.index.IndexJob;
 import com.ghost.lucene.index.IndexService;
-import com.ghost.source.ConnectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 @Controller
 @Scope("session")
@@ -38,8 +40,6 @@ public class IndexController {
         return "index";
     }
 
-    private Collection<URL> indexedLinks = new HashSet<>();
-
     @RequestMapping(method = RequestMethod.POST)
     public ModelMap indexSubmit(@RequestParam("q") String query,
                               @RequestParam int depth,
@@ -49,36 +49,84 @@ public class IndexController {
         map.put("query", query);
         try {
             URL url = new URL(query);
-            if (ConnectionUtils.isAllowed(url)) {
-                if (isIndexed(url)) {
-                    map.put("statusError", messageSource.getMessage("index.exist", null, locale));
-                    return new ModelMap("redirect:/index?q=" + query);
-                }
-                indexService.setIndexDepth(depth);
-                indexService.index(url);
-                addToIndex(url);
-                map.put("indexCount", indexService.getIndexCount());
-                map.put("indexTime", indexService.getIndexTime());
-                map.put("statusSuccess", messageSource.getMessage("index.success", null, locale));
-            } else {
-                map.put("statusError", messageSource.getMessage("url.unreachable", null, locale));
-                return new ModelMap("redirect:/index");
+            if (indexService.isIndexed(url)) {
+                map.put("statusError", messageSource.getMessage("index.exist", null, locale));
+                return new ModelMap("redirect:/index?q=" + query);
             }
+            IndexJob job = indexService.submit(url, depth);
+            map.put("jobId", job.getId());
+            map.put("statusSuccess", messageSource.getMessage("index.queued", null, locale));
         } catch (MalformedURLException e) {
             map.put("statusError", messageSource.getMessage("url.malformed", null, locale));
             return new ModelMap("redirect:/index");
+        } catch (IllegalArgumentException e) {
+            map.put("statusError", messageSource.getMessage("index.depth", null, locale));
+            return new ModelMap("redirect:/index");
+        } catch (RejectedExecutionException e) {
+            map.put("statusError", messageSource.getMessage("index.busy", null, locale));
         } catch (IOException e) {
+            NoobleApplication.log.error("Error reading index: {}", e.getMessage());
             map.put("statusError", messageSource.getMessage("index.fail", null, locale));
-            e.printStackTrace();
+            return new ModelMap("redirect:/index");
         }
         return new ModelMap("redirect:/index?q=" + query);
     }
 
-    private boolean isIndexed(URL url) {
-        return indexedLinks.contains(url);
+    /**
+     * Queues index job, returns at once
+     * @param url to start crawl from
+     * @param depth max link depth, lucene.index.depth by default, 0 indexes the page only
+     * @return 202 with the queued job, 400 if the url is malformed or the depth is negative,
+     * 503 if the job queue is full
+     */
+    @JsonView(View.Public.class)
+    @RequestMapping(value = "/jobs", method = RequestMethod.POST, produces = "application/json")
+    public @ResponseBody
+    ResponseEntity<IndexJob> submitJob(@RequestParam String url,
+                                       @RequestParam(required = false) Integer depth) {
+        try {
+            IndexJob job = indexService.submit(new URL(url), depth == null ? indexService.getIndexDepth() : depth);
+            return new ResponseEntity<>(job, HttpStatus.ACCEPTED);
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            NoobleApplication.log.error("Invalid index request: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * @return queued, running and recently finished jobs
+     */
+    @JsonView(View.Public.class)
+    @RequestMapping(value = "/jobs", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    List<IndexJob> jobs() {
+        return indexService.getJobs();
+    }
+
+    /**
+     * @param id of the job
+     * @return status and progress of the job: fetched, indexed and failed pages, throughput
+     */
+    @JsonView(View.Public.class)
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    ResponseEntity<IndexJob> job(@PathVariable long id) {
+        IndexJob job = indexService.getJob(id);
+        return job == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : new ResponseEntity<>(job, HttpStatus.OK);
     }
 
-    private boolean addToIndex(URL url) {
-        return indexedLinks.add(url);
+    /**
+     * Cancels the queued or running job
+     * @param id of the job
+     * @return the job, its status is changed when the crawl stops
+     */
+    @JsonView(View.Public.class)
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.DELETE, produces = "application/json")
+    public @ResponseBody
+    ResponseEntity<IndexJob> cancelJob(@PathVariable long id) {
+        IndexJob job = indexService.cancel(id);
+        return job == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : new ResponseEntity<>(job, HttpStatus.OK);
     }
 }
@@ -0,0 +1,54 @@
+package com.ghost.web;
+
+import com.ghost.lucene.search.QueryCache;
+import com.ghost.lucene.search.SearchService;
+import com.ghost.lucene.search.Searcher;
+import com.ghost.metrics.LatencyMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Exposes latency histograms of the search and crawl stages and search counters in Prometheus text format.
+ * Not session scoped, scrapes do not create sessions.
+ */
+@Controller
+public class MetricsController {
+
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private Searcher searcher;
+
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET, produces = PROMETHEUS_TEXT)
+    public @ResponseBody
+    String metrics() {
+        StringWriter metrics = new StringWriter();
+        PrintWriter writer = new PrintWriter(metrics);
+        LatencyMetrics.write(writer);
+        QueryCache queryCache = searchService.getQueryCache();
+        writeCounter(writer, "nooble_search_cache_hits_total", "Search pages found in the query cache",
+                queryCache.getHitCount());
+        writeCounter(writer, "nooble_search_cache_misses_total", "Search pages not found in the query cache",
+                queryCache.getMissCount());
+        writer.println("# HELP nooble_search_warm_up_seconds Last warm up of a new searcher");
+        writer.println("# TYPE nooble_search_warm_up_seconds gauge");
+        writer.println("nooble_search_warm_up_seconds " + searcher.getWarmUpTime() / 1000.0);
+        writer.flush();
+        return metrics.toString();
+    }
+
+    private static void writeCounter(PrintWriter writer, String name, String help, long value) {
+        writer.println("# HELP " + name + " " + help);
+        writer.println("# TYPE " + name + " counter");
+        writer.println(name + " " + value);
+    }
+}
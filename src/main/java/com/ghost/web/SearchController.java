@@ -2,20 +2,23 @@ package com.ghost.web;
 
 import com.fasterxml.jackson.annotation.JsonView;
 import com.ghost.NoobleApplication;
+import com.ghost.json.CursorRequest;
 import com.ghost.json.View;
-import com.ghost.lucene.search.SearchDocument;
+import com.ghost.lucene.search.SearchCursorExpiredException;
+import com.ghost.lucene.search.SearchPage;
 import com.ghost.lucene.search.SearchService;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Scope;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.Locale;
 
 @Controller
@@ -47,15 +50,14 @@ public class SearchController {
                          ModelMap model,
                          Locale locale) {
         NoobleApplication.log.info("Search query: {}", query);
-        searchService.getSentQueries().add(query);
         model.addAttribute("appName", environment.getProperty("spring.application.name"));
         model.addAttribute("query", query);
         try {
-            searchService.search(query);
-            model.addAttribute("pages", searchService.getResultDocs(0));
-            model.addAttribute("resultCount", searchService.getTotalHits());
-            model.addAttribute("searchTime", searchService.getSearchTimeString());
-            model.addAttribute("start", searchService.getStart());
+            SearchPage page = searchService.search(query);
+            model.addAttribute("pages", page.getDocuments());
+            model.addAttribute("resultCount", page.getTotalHits());
+            model.addAttribute("searchTime", page.getSearchTimeString());
+            model.addAttribute("cursor", page.getCursor());
         } catch (ParseException e) {
             model.addAttribute("statusError", messageSource.getMessage("search.error.parse", null, locale));
         } catch (IOException e) {
@@ -66,18 +68,27 @@ public class SearchController {
 
     /**
      * Processes ajax POST request for more results to show using JSON
-     * @param start is the number of shown docs on search result page
-     * @return JSON representation of SearchDocument Collection
+     * @param request query and cursor of the next page returned with the previous page
+     * @return JSON representation of SearchPage: documents and cursor of the next page;
+     * 410 if the cursor expired and the query is to be searched again, 400 if the request is not valid
      */
     @JsonView(View.Public.class)
     @RequestMapping(value = "/ajax", produces = "application/json")
-    public @ResponseBody
-    Collection<SearchDocument> searchList(@RequestBody Integer start) {
-        if (start != null) {
-            return searchService.getResultDocs(start);
-        } else {
-            NoobleApplication.log.error("Param 'start' is null!");
+    public ResponseEntity<SearchPage> searchList(@RequestBody CursorRequest request) {
+        if (request.getQuery() == null || request.getCursor() == null) {
+            NoobleApplication.log.error("Param 'query' or 'cursor' is null!");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(searchService.search(request.getQuery(), request.getCursor()), HttpStatus.OK);
+        } catch (SearchCursorExpiredException e) {
+            return new ResponseEntity<>(HttpStatus.GONE);
+        } catch (ParseException | IllegalArgumentException e) {
+            NoobleApplication.log.error("Invalid search request: {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (IOException e) {
+            NoobleApplication.log.error("Error loading search results!", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
-        return null;
     }
 }
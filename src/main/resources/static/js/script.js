@@ -28,14 +28,19 @@ function searchAjax() {
         type : "POST",
         contentType : "application/json",
         url : "/ajax",
-        data : getStart(),
+        data : JSON.stringify(getCursorRequest()),
         dataType : 'json',
         timeout : 100000,
-        success : function(results) {
-            display(results);
-            setStart(results.length);
+        success : function(page) {
+            display(page.documents);
+            setCursor(page.cursor);
         },
         error : function(e) {
+            if (e.status === 410) {
+                // results changed since the first page, search again
+                window.location = "/search?q=" + encodeURIComponent($("#param-query").val());
+                return;
+            }
             hideViewMore();
             console.log("AJAX ERROR: ", e);
         }
@@ -57,14 +62,74 @@ function hideViewMore() {
     $("#more-results-form").hide();
 }
 
-function getStart() {
-    return $("#param-start").val();
+/**
+ * Forms request for the next page: query and cursor returned with the previous page
+ */
+function getCursorRequest() {
+    return {
+        query : $("#param-query").val(),
+        cursor : $("#param-cursor").val()
+    };
 }
 
-function setStart(value) {
-    var len = parseInt(getStart()) + parseInt(value);
-    $("#param-start").val(len);
-    if (len >= resultCount) {
+function setCursor(cursor) {
+    $("#param-cursor").val(cursor);
+    if (!cursor) {
         hideViewMore();
     }
-}
\ No newline at end of file
+}
+
+$(function() {
+    var $job = $("#job-status");
+    if ($job.length) {
+        pollJob($job.data("job"));
+    }
+});
+
+$(document).on("click", "#job-cancel", function(event) {
+    event.preventDefault();
+    $.ajax({
+        type : "DELETE",
+        url : "/index/jobs/" + $("#job-status").data("job"),
+        dataType : 'json'
+    });
+});
+
+/**
+ * Shows progress of the index job till it is finished
+ * @param id of the job
+ */
+function pollJob(id) {
+
+    $.ajax({
+        type : "GET",
+        url : "/index/jobs/" + id,
+        dataType : 'json',
+        timeout : 10000,
+        success : function(job) {
+            displayJob(job);
+            if (job.status == "QUEUED" || job.status == "RUNNING") {
+                setTimeout(function() { pollJob(id); }, 1000);
+            }
+        },
+        error : function(e) {
+            console.log("AJAX ERROR: ", e);
+        }
+    });
+}
+
+function displayJob(job) {
+    clear("#job-status");
+    var $div = $("<div>").appendTo($("#job-status"));
+    $("<div>").text("Index job " + job.id + ": " + job.status.toLowerCase()).appendTo($div);
+    $("<div>").text("Fetched pages: " + job.fetchedCount + ", indexed: " + job.indexedCount
+        + ", errors: " + job.errorCount + ", waiting: " + job.frontierSize).appendTo($div);
+    $("<div>").text((job.elapsedTime / 1000).toFixed(1) + " s, "
+        + job.pagesPerSecond.toFixed(1) + " pages/s").appendTo($div);
+    if (job.error) {
+        $("<div>").text(job.error).appendTo($div);
+    }
+    if (job.status == "QUEUED" || job.status == "RUNNING") {
+        $("<a>").attr("id", "job-cancel").attr("href", "#").text("Cancel").appendTo($div);
+    }
+}
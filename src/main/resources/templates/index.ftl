@@ -24,7 +24,7 @@
                 Index depth:
                 <#assign depthDefault=1 depthMaxDefault=3>
                 <span id="range-value">${depth!depthDefault}</span>
-                <input class="index-depth" type="range" name="depth" min="1" max="${depthMax!depthMaxDefault}" step="1" value="${depth!depthDefault}"
+                <input class="index-depth" type="range" name="depth" min="0" max="${depthMax!depthMaxDefault}" step="1" value="${depth!depthDefault}"
                         onchange="showValue(this.value)" oninput="showValue(this.value)"/>
             </label>
             <br>
@@ -34,6 +34,9 @@
     <div class="status" id="status">
         <@message.status/>
     </div>
+    <#if jobId??>
+    <div class="status" id="job-status" data-job="${jobId?c}"></div>
+    </#if>
 </body>
 
 </html>
\ No newline at end of file
@@ -14,11 +14,4 @@
         </div>
     </#if>
 </div>
-<div>
-<#if indexCount??>
-    <div>
-        Indexed pages: <b>${indexCount!"-"}</b> (${indexTime!"-"})
-    </div>
-</#if>
-</div>
 </#macro>
\ No newline at end of file
@@ -56,10 +56,11 @@
                 </#if>
             </div>
             <#-- Button "View more ..." -->
-            <#if (start > 0)>
+            <#if cursor??>
                 <div id="more-results-form">
                     <form>
-                        <input type="hidden" id="param-start" value="${start!""}">
+                        <input type="hidden" id="param-query" value="${query!""}">
+                        <input type="hidden" id="param-cursor" value="${cursor}">
                         <input type="submit" id="view-more" value="View more ...">
                     </form>
                 </div>
@@ -0,0 +1,48 @@
+package com.ghost.lucene;
+
+import org.springframework.boot.bind.PropertiesConfigurationFactory;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertiesPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Binds lucene.properties of the application outside of Spring context, with the index in the given directory
+ */
+public final class LucenePropertiesFixture {
+
+    private LucenePropertiesFixture() {}
+
+    /**
+     * @param indexDirectory directory of the index
+     * @param overrides property name and value pairs
+     * @return bound properties
+     */
+    public static LuceneProperties create(Path indexDirectory, String... overrides) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream input = LucenePropertiesFixture.class.getResourceAsStream("/lucene.properties")) {
+            if (input == null) {
+                throw new IOException("lucene.properties not found");
+            }
+            properties.load(input);
+        }
+        properties.setProperty("lucene.index.directory-win", indexDirectory.toString());
+        properties.setProperty("lucene.index.directory-unix", indexDirectory.toString());
+        properties.setProperty("lucene.index.directory", indexDirectory.toString());
+        properties.setProperty("lucene.index.commit-interval", "0");
+        for (int i = 0; i + 1 < overrides.length; i += 2) {
+            properties.setProperty(overrides[i], overrides[i + 1]);
+        }
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new PropertiesPropertySource("test", properties));
+        PropertiesConfigurationFactory<LuceneProperties> factory =
+                new PropertiesConfigurationFactory<>(LuceneProperties.class);
+        factory.setPropertySources(sources);
+        factory.setTargetName("lucene");
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+}
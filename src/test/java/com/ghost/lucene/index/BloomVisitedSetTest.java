@@ -0,0 +1,29 @@
+package com.ghost.lucene.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BloomVisitedSetTest {
+
+    @Test
+    public void addsLinkOnce() {
+        BloomVisitedSet visitedSet = new BloomVisitedSet(1000, 0.001);
+        assertTrue(visitedSet.add("http://example.com/"));
+        assertFalse(visitedSet.add("http://example.com/"));
+        assertTrue(visitedSet.add("http://example.com/a"));
+        assertEquals(2, visitedSet.size());
+    }
+
+    @Test
+    public void rejectsProbabilityOutOfRange() {
+        for (double probability : new double[] {0, 1, -0.5, 2, Double.NaN}) {
+            try {
+                new BloomVisitedSet(1000, probability);
+                fail("false positive probability " + probability + " accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
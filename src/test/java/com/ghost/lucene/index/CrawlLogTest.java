@@ -0,0 +1,154 @@
+package com.ghost.lucene.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrawlLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SEED = "http://example.com/";
+
+    private static CrawlLink link(String path) throws Exception {
+        return new CrawlLink(new URL(SEED + path), 1);
+    }
+
+    private List<String> visited = new ArrayList<>();
+    private List<String> frontier = new ArrayList<>();
+
+    private CrawlLog reopen(Path directory) throws Exception {
+        visited.clear();
+        frontier.clear();
+        CrawlLog log = CrawlLog.open(directory, new URL(SEED));
+        if (log.isResumed()) {
+            log.replay(visited::add, link -> frontier.add(link.getUrl().toString()));
+        }
+        return log;
+    }
+
+    @Test
+    public void replaysLinksNotFinishedBeforeCheckpoint() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CrawlLog log = reopen(directory);
+        assertFalse(log.isResumed());
+        log.added(link("a"));
+        log.added(link("b"));
+        log.added(link("c"));
+        log.finished(link("a"));
+        log.beforeCommit();
+        // finished while committing, not in the commit
+        log.finished(link("b"));
+        log.afterCommit();
+        log.close();
+
+        log = reopen(directory);
+        assertTrue(log.isResumed());
+        assertEquals(Arrays.asList(SEED + "a", SEED + "b", SEED + "c"), visited);
+        assertEquals(Arrays.asList(SEED + "b", SEED + "c"), frontier);
+        log.close();
+    }
+
+    @Test
+    public void otherSeedStartsNewLog() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CrawlLog log = reopen(directory);
+        log.added(link("a"));
+        log.close();
+        CrawlLog other = CrawlLog.open(directory, new URL("http://other.com/"));
+        assertFalse(other.isResumed());
+        other.close();
+        assertTrue(CrawlLog.exists(directory, new URL(SEED)));
+    }
+
+    @Test
+    public void tornTailIsCutAndFrontierKept() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CrawlLog log = reopen(directory);
+        log.added(link("a"));
+        log.added(link("b"));
+        log.close();
+        // type byte of the next record reached the disk, its length is garbage
+        long end = seedSize() + 2 * addSize(SEED + "a");
+        try (FileChannel channel = FileChannel.open(logFile(directory), StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.allocate(9).put((byte) 2).putInt(1).putInt(Integer.MAX_VALUE);
+            record.flip();
+            channel.write(record, end);
+        }
+
+        log = reopen(directory);
+        assertTrue(log.isResumed());
+        assertEquals(Arrays.asList(SEED + "a", SEED + "b"), frontier);
+        // torn record is overwritten by the next one
+        log.added(link("c"));
+        log.close();
+
+        log = reopen(directory);
+        assertEquals(Arrays.asList(SEED + "a", SEED + "b", SEED + "c"), frontier);
+        log.delete();
+        assertFalse(CrawlLog.exists(directory, new URL(SEED)));
+    }
+
+    @Test
+    public void tornSeedStartsNewLog() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CrawlLog log = reopen(directory);
+        log.added(link("a"));
+        log.close();
+        try (FileChannel channel = FileChannel.open(logFile(directory), StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4).putInt(-1);
+            length.flip();
+            channel.write(length, 1);
+        }
+        log = reopen(directory);
+        assertFalse(log.isResumed());
+        log.close();
+    }
+
+    @Test
+    public void fullLogStopsLogging() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long maxSize = seedSize() + 2 * addSize(SEED + "a") + 1;
+        CrawlLog log = CrawlLog.open(directory, new URL(SEED), maxSize);
+        log.added(link("a"));
+        log.added(link("b"));
+        log.added(link("c"));
+        log.afterCommit();
+        log.close();
+        assertTrue(logFile(directory).toFile().length() <= maxSize);
+
+        log = reopen(directory);
+        assertTrue(log.isResumed());
+        assertEquals(Arrays.asList(SEED + "a", SEED + "b"), frontier);
+        log.close();
+    }
+
+    private static int seedSize() {
+        return 1 + 4 + SEED.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int addSize(String link) {
+        return 1 + 4 + 4 + link.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static Path logFile(Path directory) {
+        File[] files = directory.toFile().listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0].toPath();
+    }
+}
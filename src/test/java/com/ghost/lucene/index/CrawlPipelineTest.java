@@ -0,0 +1,156 @@
+package com.ghost.lucene.index;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.LucenePropertiesFixture;
+import com.ghost.source.FetchResponse;
+import com.ghost.source.PageFetcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CrawlPipelineTest {
+
+    private static final int PAGES = 60;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fullStageQueueBlocksSubmit() throws Exception {
+        CrawlStage stage = new CrawlStage("test", 1, 2);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.submit(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            stage.submit(() -> {});
+            stage.submit(() -> {});
+            assertEquals(2, stage.getQueueSize());
+
+            CountDownLatch submitted = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                try {
+                    stage.submit(() -> {});
+                    submitted.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+            assertFalse("submit to the full queue did not wait", submitted.await(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+            producer.join();
+        } finally {
+            release.countDown();
+            stage.shutdown();
+        }
+    }
+
+    @Test
+    public void slowIndexStageBoundsPagesInProgress() throws Exception {
+        LuceneProperties properties = LucenePropertiesFixture.create(folder.getRoot().toPath(),
+                "lucene.index.threads", "4",
+                "lucene.index.parse-threads", "1",
+                "lucene.index.parse-queue", "2",
+                "lucene.index.index-threads", "1",
+                "lucene.index.index-queue", "2",
+                "lucene.index.host-rate", "0",
+                "lucene.index.host-concurrency", "0",
+                "lucene.index.robots", "false");
+        AtomicInteger indexed = new AtomicInteger();
+        SiteFetcher fetcher = new SiteFetcher(indexed);
+        Indexer indexer = new Indexer(properties) {
+            @Override
+            public boolean indexSource(String contents, String name, String path, String title,
+                                       Collection<String> links, String etag, String lastModified)
+                    throws IOException {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                boolean changed = super.indexSource(contents, name, path, title, links, etag, lastModified);
+                indexed.incrementAndGet();
+                return changed;
+            }
+        };
+        indexer.init();
+        try (RobotsCache robotsCache = new RobotsCache(fetcher, "NoobleBot", 0, false)) {
+            Crawler crawler = new Crawler(new URL("http://example.com/p/0"), 10, indexer, fetcher, robotsCache,
+                    properties.getIndex());
+            assertEquals(PAGES, (int) crawler.call());
+            // fetch workers and the parse and index stages with their queues
+            int bound = 4 + (1 + 2) + (1 + 2);
+            assertTrue("pages in progress " + fetcher.maxInProgress, fetcher.maxInProgress <= bound);
+            // fetch is fast, so the pipeline is filled up to the bound by the slow index stage
+            assertTrue("pages in progress " + fetcher.maxInProgress, fetcher.maxInProgress >= bound - 2);
+            assertEquals(0, crawler.getPending());
+            assertEquals(0, crawler.getInFlight());
+            assertEquals(PAGES, crawler.getFetchedCount());
+            assertEquals(0, crawler.getErrorCount());
+        } finally {
+            indexer.close();
+        }
+    }
+
+    /**
+     * Serves PAGES linked html pages at once, tracks pages fetched but not indexed yet
+     */
+    private static class SiteFetcher implements PageFetcher {
+
+        private final AtomicInteger indexed;
+        private final AtomicInteger fetched = new AtomicInteger();
+        private volatile int maxInProgress;
+
+        SiteFetcher(AtomicInteger indexed) {
+            this.indexed = indexed;
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> fetch(URL url, Map<String, String> headers) {
+            synchronized (this) {
+                maxInProgress = Math.max(maxInProgress, fetched.incrementAndGet() - indexed.get());
+            }
+            int id = Integer.parseInt(url.getPath().substring("/p/".length()));
+            StringBuilder html = new StringBuilder("<html><head><title>Page " + id + "</title></head><body><p>page "
+                    + id + "</p>");
+            for (int k = 1; k <= 5; k++) {
+                html.append("<a href=\"/p/").append((id * 7 + k * 13) % PAGES).append("\">link</a>");
+            }
+            html.append("</body></html>");
+            return CompletableFuture.completedFuture(new FetchResponse(url, 200,
+                    Collections.singletonMap("content-type", "text/html; charset=UTF-8"),
+                    ByteBuffer.wrap(html.toString().getBytes(StandardCharsets.UTF_8))));
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> head(URL url) {
+            return fetch(url, Collections.emptyMap());
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,195 @@
+package com.ghost.lucene.index;
+
+import com.ghost.source.FetchResponse;
+import com.ghost.source.PageFetcher;
+import com.ghost.source.RobotsRules;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class HostSchedulerTest {
+
+    private final RobotsFetcher fetcher = new RobotsFetcher();
+    private RobotsCache robotsCache;
+
+    @After
+    public void close() throws Exception {
+        if (robotsCache != null) {
+            robotsCache.close();
+        }
+    }
+
+    private HostScheduler create(double rate, int burst, int concurrency, long robotsExpire) {
+        robotsCache = new RobotsCache(fetcher, "NoobleBot", robotsExpire, true);
+        return new HostScheduler(robotsCache, rate, burst, concurrency, 8000, 100);
+    }
+
+    private static CrawlLink link(String url) throws Exception {
+        return new CrawlLink(new URL(url), 0);
+    }
+
+    private static List<String> poll(HostScheduler frontier, long now, int count) {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CrawlLink link = frontier.poll(now);
+            urls.add(link == null ? null : link.getUrl().toString());
+        }
+        return urls;
+    }
+
+    @Test
+    public void tokenBucketLimitsRateOfHost() throws Exception {
+        HostScheduler frontier = create(10, 2, 0, 60000);
+        for (int i = 0; i < 4; i++) {
+            frontier.add(link("http://a.com/" + i));
+        }
+        robotsCache.get(new URL("http://a.com/"));
+        long now = System.currentTimeMillis();
+        // burst is sent at once, then one page per 100 ms
+        assertEquals(Arrays.asList("http://a.com/0", "http://a.com/1", null), poll(frontier, now, 3));
+        assertEquals(now + 100, frontier.nextReadyTime(now));
+        assertNull(frontier.poll(now + 99));
+        assertEquals("http://a.com/2", frontier.poll(now + 100).getUrl().toString());
+        assertEquals(1, frontier.size());
+    }
+
+    @Test
+    public void crawlDelayLowersRateAndBurst() throws Exception {
+        fetcher.robots = "User-agent: *\nCrawl-delay: 1\n";
+        HostScheduler frontier = create(10, 5, 0, 60000);
+        for (int i = 0; i < 3; i++) {
+            frontier.add(link("http://a.com/" + i));
+        }
+        assertEquals(1000, robotsCache.get(new URL("http://a.com/")).getCrawlDelay());
+        long now = System.currentTimeMillis();
+        assertEquals(Arrays.asList("http://a.com/0", null), poll(frontier, now, 2));
+        assertEquals(now + 1000, frontier.nextReadyTime(now));
+        assertEquals("http://a.com/1", frontier.poll(now + 1000).getUrl().toString());
+    }
+
+    @Test
+    public void backoffDoublesUntilMaxAndHalvesOnSuccess() throws Exception {
+        HostScheduler frontier = create(0, 1, 0, 60000);
+        URL url = new URL("http://a.com/");
+        frontier.add(link("http://a.com/0"));
+        robotsCache.get(url);
+        assertEquals(1000, frontier.backoff(url, -1));
+        assertEquals(2000, frontier.backoff(url, -1));
+        assertEquals(4000, frontier.backoff(url, -1));
+        assertEquals(8000, frontier.backoff(url, -1));
+        assertEquals(8000, frontier.backoff(url, -1));
+        // 8000 -> 4000 -> 2000
+        frontier.succeeded(url);
+        frontier.succeeded(url);
+        assertEquals(4000, frontier.backoff(url, -1));
+        // Retry-After longer than the backoff is respected up to the max
+        assertEquals(8000, frontier.backoff(url, 60000));
+
+        long now = System.currentTimeMillis();
+        assertNull(frontier.poll(now));
+        assertTrue(frontier.nextReadyTime(now) >= now + 7000);
+        assertEquals("http://a.com/0", frontier.poll(now + 8001).getUrl().toString());
+
+        for (int i = 0; i < 5; i++) {
+            frontier.succeeded(url);
+        }
+        assertEquals(1000, frontier.backoff(url, -1));
+    }
+
+    @Test
+    public void hostsAreServedRoundRobin() throws Exception {
+        HostScheduler frontier = create(0, 1, 1, 60000);
+        for (String url : new String[] {"http://a.com/1", "http://a.com/2", "http://a.com/3", "http://b.com/1",
+                "http://b.com/2", "http://c.com/1"}) {
+            frontier.add(link(url));
+        }
+        for (String host : new String[] {"http://a.com/", "http://b.com/", "http://c.com/"}) {
+            robotsCache.get(new URL(host));
+        }
+        long now = System.currentTimeMillis();
+        // one page per host in progress
+        assertEquals(Arrays.asList("http://a.com/1", "http://b.com/1", "http://c.com/1", null),
+                poll(frontier, now, 4));
+        assertEquals(Long.MAX_VALUE, frontier.nextReadyTime(now));
+        frontier.finished(link("http://a.com/1"));
+        frontier.finished(link("http://b.com/1"));
+        assertEquals(Arrays.asList("http://a.com/2", "http://b.com/2", null), poll(frontier, now, 3));
+        frontier.finished(link("http://a.com/2"));
+        assertEquals("http://a.com/3", frontier.poll(now).getUrl().toString());
+        assertTrue(frontier.isEmpty());
+        assertEquals(3, frontier.getHostCount());
+    }
+
+    @Test
+    public void robotsServerErrorSuspendsHostUntilRetry() throws Exception {
+        fetcher.status = 503;
+        HostScheduler frontier = create(0, 1, 0, 50);
+        URL url = new URL("http://a.com/");
+        frontier.add(link("http://a.com/0"));
+        RobotsRules rules = robotsCache.get(url);
+        assertTrue(rules.isTemporary());
+        long now = System.currentTimeMillis();
+        assertNull(frontier.poll(now));
+        assertEquals(1, frontier.size());
+        assertEquals(0, frontier.getDeniedCount());
+        assertTrue(frontier.nextReadyTime(now) >= rules.getRetryTime());
+
+        fetcher.status = 200;
+        Thread.sleep(Math.max(0, rules.getRetryTime() - System.currentTimeMillis()) + 1);
+        assertFalse(robotsCache.get(url).isTemporary());
+        assertEquals("http://a.com/0", frontier.poll(System.currentTimeMillis()).getUrl().toString());
+    }
+
+    @Test
+    public void robotsServerErrorDisallowsHostAfterRetries() throws Exception {
+        fetcher.status = 429;
+        HostScheduler frontier = create(0, 1, 0, 50);
+        URL url = new URL("http://a.com/");
+        frontier.add(link("http://a.com/0"));
+        RobotsRules rules = robotsCache.get(url);
+        while (rules.isTemporary()) {
+            Thread.sleep(Math.max(0, rules.getRetryTime() - System.currentTimeMillis()) + 1);
+            rules = robotsCache.get(url);
+        }
+        assertFalse(rules.isAllowed("/0"));
+        assertNull(frontier.poll(System.currentTimeMillis()));
+        assertTrue(frontier.isEmpty());
+        assertEquals(1, frontier.getDeniedCount());
+    }
+
+    /**
+     * Responds to robots.txt requests only
+     */
+    private static class RobotsFetcher implements PageFetcher {
+
+        private volatile int status = 200;
+        private volatile String robots = "User-agent: *\nDisallow: /private\n";
+
+        @Override
+        public CompletableFuture<FetchResponse> fetch(URL url, Map<String, String> headers) {
+            assertEquals("/robots.txt", url.getPath());
+            byte[] body = status == 200 ? robots.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            return CompletableFuture.completedFuture(new FetchResponse(url, status,
+                    Collections.singletonMap("content-type", "text/plain"), ByteBuffer.wrap(body)));
+        }
+
+        @Override
+        public CompletableFuture<FetchResponse> head(URL url) {
+            return fetch(url, Collections.emptyMap());
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,64 @@
+package com.ghost.lucene.index;
+
+import com.ghost.lucene.LucenePropertiesFixture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.*;
+
+public class IndexJobTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static IndexJob job() throws Exception {
+        return new IndexJob(1, new URL("http://example.com/"), 1);
+    }
+
+    @Test
+    public void cancelledWhileQueuedIsNotRun() throws Exception {
+        IndexJob job = job();
+        FutureTask<Void> future = new FutureTask<>(() -> null);
+        job.setFuture(future);
+        assertEquals(IndexJob.Status.QUEUED, job.getStatus());
+        assertTrue(job.cancel());
+        assertEquals(IndexJob.Status.CANCELLED, job.getStatus());
+        assertTrue(future.isCancelled());
+        assertFalse(job.start());
+        assertEquals(0, job.getElapsedTime());
+        assertFalse(job.cancel());
+    }
+
+    @Test
+    public void cancelledBeforeCrawlerIsSetCancelsCrawler() throws Exception {
+        IndexJob job = job();
+        assertTrue(job.start());
+        assertEquals(IndexJob.Status.RUNNING, job.getStatus());
+        // cancel request comes before the crawl is created
+        assertTrue(job.cancel());
+        assertEquals(IndexJob.Status.RUNNING, job.getStatus());
+        Crawler crawler = new Crawler(job.getSeed(), job.getDepth(), null, null, null,
+                LucenePropertiesFixture.create(folder.getRoot().toPath()).getIndex());
+        job.setCrawler(crawler);
+        assertTrue(crawler.isCancelled());
+        job.finish(null);
+        assertEquals(IndexJob.Status.CANCELLED, job.getStatus());
+        assertFalse(job.cancel());
+    }
+
+    @Test
+    public void finishedWithErrorIsFailed() throws Exception {
+        IndexJob job = job();
+        assertTrue(job.start());
+        job.finish(new IOException("disk full"));
+        assertEquals(IndexJob.Status.FAILED, job.getStatus());
+        assertEquals("disk full", job.getError());
+        assertTrue(job.getStatus().isFinished());
+        assertFalse(job.cancel());
+    }
+}
@@ -0,0 +1,86 @@
+package com.ghost.lucene.index;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.LucenePropertiesFixture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IndexServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsJobHistoryOfFinishedJobs() throws Exception {
+        LuceneProperties properties = LucenePropertiesFixture.create(folder.getRoot().toPath(),
+                "lucene.index.job-threads", "1",
+                "lucene.index.job-history", "2",
+                "lucene.index.robots", "false",
+                "lucene.index.resumable", "false",
+                "lucene.index.retries", "0");
+        Indexer indexer = new Indexer(properties);
+        indexer.init();
+        IndexService indexService = new IndexService(properties, indexer);
+        indexService.initService();
+        try {
+            // nothing listens on the port, every job fails at once on its unreachable seed
+            for (int i = 0; i < 4; i++) {
+                IndexJob job = indexService.submit(new URL("http://localhost:1/" + i), 1);
+                waitFinished(job);
+                assertEquals(IndexJob.Status.FAILED, job.getStatus());
+                assertNotNull(job.getError());
+            }
+            IndexJob last = indexService.submit(new URL("http://localhost:1/4"), 1);
+            assertNull(indexService.getJob(1));
+            assertNull(indexService.getJob(2));
+            assertSame(last, indexService.getJob(last.getId()));
+            List<IndexJob> jobs = indexService.getJobs();
+            assertSame(last, jobs.get(jobs.size() - 1));
+            // the last job may finish after the history is trimmed
+            assertTrue(jobs.stream().filter(job -> job != last && job.getStatus().isFinished()).count() <= 2);
+            waitFinished(last);
+        } finally {
+            indexService.closeService();
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void limitsOnlyMaxDepth() throws Exception {
+        LuceneProperties properties = LucenePropertiesFixture.create(folder.getRoot().toPath(),
+                "lucene.index.depth-max", "3",
+                "lucene.index.robots", "false",
+                "lucene.index.resumable", "false");
+        Indexer indexer = new Indexer(properties);
+        indexer.init();
+        IndexService indexService = new IndexService(properties, indexer);
+        indexService.initService();
+        try {
+            assertEquals(0, indexService.submit(new URL("http://localhost:1/page"), 0).getDepth());
+            assertEquals(3, indexService.submit(new URL("http://localhost:1/deep"), 10).getDepth());
+            try {
+                indexService.submit(new URL("http://localhost:1/negative"), -1);
+                fail("negative depth is accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            indexService.closeService();
+            indexer.close();
+        }
+    }
+
+    private static void waitFinished(IndexJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!job.getStatus().isFinished()) {
+            assertTrue(job + " not finished", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.ghost.lucene.index;
+
+import com.ghost.lucene.LucenePropertiesFixture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IndexerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Indexer open(Path directory, int shards) throws Exception {
+        Indexer indexer = new Indexer(LucenePropertiesFixture.create(directory,
+                "lucene.index.shards", String.valueOf(shards)));
+        indexer.init();
+        return indexer;
+    }
+
+    @Test
+    public void routesSourcesToShardsByPath() throws Exception {
+        Indexer indexer = open(folder.getRoot().toPath(), 3);
+        try {
+            int[] routed = new int[3];
+            for (int i = 0; i < 30; i++) {
+                String path = "http://example.com/" + i;
+                IndexShard shard = indexer.getShard(path);
+                assertSame(shard, indexer.getShard(path));
+                routed[shard.getNumber()]++;
+                indexer.indexSource("text " + i, "n" + i, path, "Page " + i);
+            }
+            // changed source replaces its document in the same shard
+            indexer.indexSource("changed text", "n0", "http://example.com/0", "Page 0");
+            // deletes of updated documents are counted after flush
+            indexer.commit();
+            for (IndexShard shard : indexer.getShards()) {
+                assertEquals(routed[shard.getNumber()], shard.getIndexWriter().numDocs());
+            }
+            assertTrue(indexer.isIndexed("http://example.com/29"));
+        } finally {
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void keepsValidatorsOfUnchangedSourceAfterRestart() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String path = "http://example.com/";
+        List<String> links = Collections.singletonList("http://example.com/a");
+        Indexer indexer = open(directory, 2);
+        assertNull(indexer.getMetadata(path));
+        assertTrue(indexer.indexSource("text", "n", path, "Page", links, "\"v1\"", null));
+        indexer.commit();
+        SourceMetadata indexed = indexer.getMetadata(path);
+        assertEquals("\"v1\"", indexed.getETag());
+        assertNull(indexed.getLastModified());
+        // same content with new validators is not indexed again
+        assertFalse(indexer.indexSource("text", "n", path, "Page", links, "\"v2\"", "Sun, 18 Oct 2026 10:00:00 GMT"));
+        indexer.close();
+
+        indexer = open(directory, 2);
+        try {
+            SourceMetadata metadata = indexer.getMetadata(path);
+            assertEquals(indexed.getHash(), metadata.getHash());
+            assertEquals("\"v2\"", metadata.getETag());
+            assertEquals("Sun, 18 Oct 2026 10:00:00 GMT", metadata.getLastModified());
+            assertTrue(metadata.getCrawlTime() >= indexed.getCrawlTime());
+            assertEquals(links, indexer.getLinks(path));
+            assertEquals(1, indexer.getShard(path).getIndexWriter().numDocs());
+        } finally {
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void updatesValidatorsOfNotModifiedSource() throws Exception {
+        String path = "http://example.com/";
+        Indexer indexer = open(folder.getRoot().toPath(), 1);
+        try {
+            indexer.indexSource("text", "n", path, "Page", Collections.emptyList(), "\"v1\"",
+                    "Sun, 18 Oct 2026 10:00:00 GMT");
+            indexer.commit();
+            SourceMetadata indexed = indexer.getMetadata(path);
+            Thread.sleep(2);
+            assertTrue(indexer.updateNotModified(path, indexed, "\"v2\"", null));
+            indexer.commit();
+            SourceMetadata metadata = indexer.getMetadata(path);
+            assertEquals(indexed.getHash(), metadata.getHash());
+            assertEquals("\"v2\"", metadata.getETag());
+            assertEquals("Sun, 18 Oct 2026 10:00:00 GMT", metadata.getLastModified());
+            assertTrue(metadata.getCrawlTime() > indexed.getCrawlTime());
+        } finally {
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void rejectsIndexOfOtherShardCount() throws Exception {
+        Path single = folder.newFolder("single").toPath();
+        Indexer indexer = open(single, 1);
+        indexer.indexSource("text", "n", "http://example.com/", "Page");
+        indexer.close();
+        try {
+            open(single, 2).close();
+            fail("single shard index opened with 2 shards");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        open(single, 1).close();
+
+        Path sharded = folder.newFolder("sharded").toPath();
+        open(sharded, 2).close();
+        for (int shards : new int[] {1, 3}) {
+            try {
+                open(sharded, shards).close();
+                fail("2 shard index opened with " + shards + " shards");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        open(sharded, 2).close();
+    }
+}
@@ -0,0 +1,167 @@
+package com.ghost.lucene.search;
+
+import com.ghost.lucene.LuceneProperties;
+import com.ghost.lucene.LucenePropertiesFixture;
+import com.ghost.lucene.index.Indexer;
+import org.apache.lucene.search.ReferenceManager;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SearcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Indexer indexer;
+    private Searcher searcher;
+
+    private void open(String... overrides) throws Exception {
+        List<String> properties = new ArrayList<>();
+        properties.add("lucene.search.refresh-max-stale");
+        properties.add("50");
+        properties.add("lucene.search.searcher-max-age");
+        properties.add("0");
+        properties.add("lucene.search.warm-up-queries");
+        properties.add("0");
+        for (String override : overrides) {
+            properties.add(override);
+        }
+        LuceneProperties luceneProperties = LucenePropertiesFixture.create(folder.getRoot().toPath(),
+                properties.toArray(new String[properties.size()]));
+        indexer = new Indexer(luceneProperties);
+        indexer.init();
+        searcher = new Searcher(luceneProperties, indexer);
+    }
+
+    @After
+    public void close() throws Exception {
+        if (searcher != null) {
+            searcher.close();
+        }
+        if (indexer != null) {
+            indexer.close();
+        }
+    }
+
+    private static List<String> paths(SearchPage page) {
+        return page.getDocuments().stream().map(SearchDocument::getPath).collect(Collectors.toList());
+    }
+
+    @Test
+    public void pagesOnFirstPageReaderAcrossRefreshUntilExpired() throws Exception {
+        open();
+        for (int i = 0; i < 15; i++) {
+            indexer.indexSource("common text " + i, "n" + i, "http://example.com/" + i, "Page " + i);
+        }
+        searcher.init();
+        List<String> all = paths(searcher.search("common", null, 15));
+        SearchPage first = searcher.search("common", null, 5);
+        assertEquals(all.subList(0, 5), paths(first));
+
+        CountDownLatch refreshed = new CountDownLatch(1);
+        searcher.addRefreshListener(new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {}
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (didRefresh) {
+                    refreshed.countDown();
+                }
+            }
+        });
+        // shorter documents score higher, they would move the page if it was searched on the new reader
+        for (int i = 0; i < 5; i++) {
+            indexer.indexSource("common", "new" + i, "http://example.com/new" + i, "New " + i);
+        }
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+
+        SearchPage second = searcher.search("common", first.getCursor(), 5);
+        assertEquals(15, second.getTotalHits());
+        assertEquals(all.subList(5, 10), paths(second));
+
+        // searching the new readers records them, the first page reader is pruned by the next refresh
+        long deadline = System.currentTimeMillis() + 5000;
+        while (searcher.search("common", null, 5).getTotalHits() < 20) {
+            assertTrue("new documents are not searched", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        while (true) {
+            try {
+                searcher.search("common", second.getCursor(), 5);
+            } catch (SearchCursorExpiredException e) {
+                break;
+            }
+            assertTrue("cursor did not expire", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void refreshesWithoutPositiveMaxStale() throws Exception {
+        open("lucene.search.refresh-max-stale", "0");
+        searcher.init();
+        indexer.indexSource("common text", "n", "http://example.com/", "Page");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (searcher.search("common", null, 5).getTotalHits() == 0) {
+            assertTrue("new document is not searched", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void sharesShardSearchersWithIndexer() throws Exception {
+        open();
+        searcher.init();
+        String path = "http://example.com/";
+        indexer.indexSource("common text", "n", path, "Page");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (searcher.search("common", null, 5).getTotalHits() == 0) {
+            assertTrue("new document is not searched", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        // refreshed by the search, not committed
+        assertNotNull(indexer.getMetadata(path));
+    }
+
+    @Test
+    public void pagesAcrossShardsWithEqualScores() throws Exception {
+        int shards = 3;
+        int perShard = 7;
+        open("lucene.index.shards", String.valueOf(shards));
+        // same number of equal documents in every shard, so all the hits of all the shards have equal scores
+        int[] counts = new int[shards];
+        for (int i = 0; counts[0] + counts[1] + counts[2] < shards * perShard; i++) {
+            String path = "http://example.com/" + i;
+            int shard = indexer.getShard(path).getNumber();
+            if (counts[shard] < perShard) {
+                counts[shard]++;
+                indexer.indexSource("same words", "n" + i, path, "Page " + i);
+            }
+        }
+        searcher.init();
+        List<String> all = paths(searcher.search("same", null, shards * perShard));
+        assertEquals(shards * perShard, new HashSet<>(all).size());
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage page = searcher.search("same", cursor, 4);
+            assertEquals(shards * perShard, page.getTotalHits());
+            paged.addAll(paths(page));
+            cursor = page.getCursor();
+        } while (cursor != null);
+        assertEquals(all, paged);
+    }
+}
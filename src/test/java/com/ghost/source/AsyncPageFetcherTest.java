@@ -0,0 +1,165 @@
+package com.ghost.source;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class AsyncPageFetcherTest {
+
+    private static final String HTML = "<html><head><title>Stub</title></head>"
+            + "<body>\u043f\u0440\u0438\u0432\u0435\u0442, nooble</body></html>";
+
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private AsyncPageFetcher fetcher;
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/page", this::gzipPage);
+        server.createContext("/old", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/page");
+            respond(exchange, 301, "moved".getBytes(StandardCharsets.US_ASCII));
+        });
+        server.createContext("/versioned", exchange -> {
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                respond(exchange, 304, new byte[0]);
+            } else {
+                respond(exchange, 200, HTML.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                slowRelease.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, new byte[0]);
+        });
+        server.createContext("/large", exchange -> {
+            // chunked response, size is not known in advance
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(new byte[MAX_BODY_SIZE + 1]);
+            } catch (IOException e) {
+                // client closed the connection
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        fetcher = new AsyncPageFetcher(10, 2, 2, 5000, MAX_BODY_SIZE, "NoobleTest");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        slowRelease.countDown();
+        fetcher.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void decodesGzipAndKeepsConnectionAlive() throws Exception {
+        FetchResponse first = fetcher.fetch(url("/page")).get();
+        FetchResponse second = fetcher.fetch(url("/page")).get();
+        assertEquals(200, first.getStatus());
+        assertEquals(HTML, first.getText());
+        assertEquals(HTML, second.getText());
+        assertEquals("both requests are sent over one connection", clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    public void followsRedirectsAndReportsErrors() throws Exception {
+        FetchResponse redirected = fetcher.fetch(url("/old")).get();
+        assertEquals(url("/page"), redirected.getUrl());
+        assertEquals(HTML, redirected.getText());
+        FetchResponse missing = fetcher.fetch(url("/missing")).get();
+        assertEquals(404, missing.getStatus());
+        assertFalse(missing.isSuccessful());
+    }
+
+    @Test
+    public void sendsConditionalRequest() throws Exception {
+        FetchResponse loaded = fetcher.load(url("/versioned"));
+        assertEquals(ETAG, loaded.getETag());
+        FetchResponse notModified = fetcher.load(url("/versioned"),
+                Collections.singletonMap("If-None-Match", loaded.getETag()));
+        assertTrue(notModified.isNotModified());
+        assertFalse(notModified.getBody().hasRemaining());
+    }
+
+    @Test
+    public void rejectsBodyOverMaxSize() throws Exception {
+        try {
+            fetcher.fetch(url("/large")).get(5, TimeUnit.SECONDS);
+            fail("body over max size is loaded");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(HTML, fetcher.fetch(url("/page")).get(5, TimeUnit.SECONDS).getText());
+    }
+
+    @Test
+    public void boundsRequestsInFlight() throws Exception {
+        CompletableFuture<FetchResponse> first = fetcher.fetch(url("/slow"));
+        CompletableFuture<FetchResponse> second = fetcher.fetch(url("/slow"));
+        assertEquals(2, fetcher.getInFlight());
+        CompletableFuture<CompletableFuture<FetchResponse>> third =
+                CompletableFuture.supplyAsync(() -> fetcher.fetch(url("/page")));
+        Thread.sleep(200);
+        assertFalse("third request waits for a free slot", third.isDone());
+        slowRelease.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, second.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(HTML, third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS).getText());
+    }
+
+    private void gzipPage(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(HTML.getBytes(StandardCharsets.UTF_8));
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        respond(exchange, 200, bytes.toByteArray());
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private URL url(String path) {
+        try {
+            return new URL("http", "localhost", server.getAddress().getPort(), path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ghost.source;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConnectionUtilsTest {
+
+    private static final String TEXT = "\u043f\u0440\u0438\u0432\u0435\u0442";
+    private static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+
+    @Test
+    public void readsBodyOfExpectedAndUnknownLength() throws Exception {
+        byte[] bytes = new byte[100_000];
+        bytes[bytes.length - 1] = 1;
+        ByteBuffer known = ConnectionUtils.read(new ByteArrayInputStream(bytes), bytes.length, bytes.length);
+        assertEquals(bytes.length, known.remaining());
+        assertEquals(bytes.length + 1, known.capacity());
+        ByteBuffer unknown = ConnectionUtils.read(new ByteArrayInputStream(bytes), -1, bytes.length);
+        assertEquals(ByteBuffer.wrap(bytes), unknown);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBodyOverMaxSize() throws Exception {
+        ConnectionUtils.read(new ByteArrayInputStream(new byte[1001]), -1, 1000);
+    }
+
+    @Test
+    public void detectsCharset() {
+        byte[] bytes = TEXT.getBytes(WINDOWS_1251);
+        assertEquals(TEXT, ConnectionUtils.decode(ByteBuffer.wrap(bytes), "text/html; charset=\"windows-1251\""));
+
+        byte[] html = ("<html><head><meta charset=windows-1251></head><body>" + TEXT + "</body></html>")
+                .getBytes(WINDOWS_1251);
+        assertEquals(new String(html, WINDOWS_1251), ConnectionUtils.decode(ByteBuffer.wrap(html), "text/html"));
+
+        byte[] utf8 = TEXT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer bom = ByteBuffer.allocate(utf8.length + 3).put(new byte[]{(byte) 0xef, (byte) 0xbb, (byte) 0xbf});
+        bom.put(utf8).flip();
+        assertEquals(TEXT, ConnectionUtils.decode(bom, "text/html; charset=windows-1251"));
+        assertEquals(TEXT, ConnectionUtils.decode(ByteBuffer.wrap(utf8), null));
+    }
+}
@@ -0,0 +1,35 @@
+package com.ghost.source;
+
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsoupPageTest {
+
+    private static final String HTML = "<html><head><title> Nooble \n test </title>"
+            + "<meta name=\"Description\" content=\"search engine\"><script>var a = '<b>';</script></head>"
+            + "<body><h1>Header</h1><p>First <b>bold</b>\n  paragraph<br>next line</p>"
+            + "<pre>  keep   spaces </pre><div>Links: <a href=\"/a\">a</a> <a href=\"http://other.com/b#x\">b</a>"
+            + "<a name=\"no-href\">c</a></div></body></html>";
+
+    @Test
+    public void extractsSameTextAsDocument() throws Exception {
+        URL url = new URL("http://example.com/index.html");
+        JsoupPage page = new JsoupPage(url, HTML);
+        assertEquals(Jsoup.parse(HTML, url.toString()).text(), page.getText());
+        assertEquals("Nooble test", page.getTitle());
+        assertEquals("search engine", page.getMetadata().get("description"));
+    }
+
+    @Test
+    public void extractsAbsoluteLinks() throws Exception {
+        JsoupPage page = new JsoupPage(new URL("http://example.com/index.html"), HTML);
+        assertEquals(new HashSet<>(Arrays.asList(new URL("http://example.com/a"), new URL("http://other.com/b#x"))),
+                new HashSet<>(page.getLinks()));
+    }
+}
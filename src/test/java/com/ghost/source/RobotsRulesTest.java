@@ -0,0 +1,40 @@
+package com.ghost.source;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RobotsRulesTest {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; NoobleBot/1.0)";
+
+    private static final String ROBOTS = "# comment\n"
+            + "User-agent: *\n"
+            + "Disallow: /\n"
+            + "\n"
+            + "User-agent: otherbot\n"
+            + "User-agent: nooblebot\n"
+            + "Crawl-delay: 1.5\n"
+            + "Disallow: /private\n"
+            + "Allow: /private/public\n"
+            + "Disallow: /*.pdf$\n";
+
+    @Test
+    public void selectsGroupOfUserAgent() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, USER_AGENT);
+        assertEquals(1500, rules.getCrawlDelay());
+        assertTrue(rules.isAllowed("/index.html"));
+        assertFalse(RobotsRules.parse(ROBOTS, "SomeBot/2.0").isAllowed("/index.html"));
+    }
+
+    @Test
+    public void longestMatchWins() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, USER_AGENT);
+        assertFalse(rules.isAllowed("/private/x"));
+        assertTrue(rules.isAllowed("/private/public/x"));
+        assertFalse(rules.isAllowed("/docs/file.pdf"));
+        assertTrue(rules.isAllowed("/docs/file.pdf?page=2"));
+    }
+}